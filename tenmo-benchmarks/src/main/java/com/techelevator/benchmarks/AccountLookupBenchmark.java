@@ -0,0 +1,52 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.model.Account;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the account lookup every transfer screen starts with, against user and account tables of accountCount
+ * rows each, bulk-loaded by DataGenerator. The lookup probes the (user_id, account_id) index, so its time should stay
+ * flat as the tables grow; sample time reports the percentiles to check that by. Narrow a run with
+ * -p accountCount=... when only one size is of interest.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountLookupBenchmark {
+
+    private static final int USER_STRIDE = 7919;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int accountCount;
+
+    private BenchmarkDatabase database;
+    private JdbcAccountDao accountDao;
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        database = new BenchmarkDatabase(1);
+        new DataGenerator(database.getDataSource()).generate(accountCount, 0);
+        accountDao = new JdbcAccountDao(database.getJdbcTemplate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    // Steps through the users by a prime stride, so lookups land all over the index rather than on one cached page
+    @Benchmark
+    public Account accountByUserId() {
+        nextUser = (nextUser + USER_STRIDE) % accountCount;
+        return accountDao.getAccountByUserId(BenchmarkDatabase.FIRST_USER_ID + nextUser);
+    }
+}
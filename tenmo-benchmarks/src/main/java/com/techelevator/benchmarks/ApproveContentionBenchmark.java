@@ -0,0 +1,124 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.exception.TransferExceptions;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every thread walks the same list of pending requests in the same order and tries to approve each one, the way
+ * several clients answering the same request at once would. The status guard in claimPendingTransfer lets exactly one
+ * approval per request through; the others wait on the row lock and then find nothing to claim. Throughput counts
+ * attempts, and the won and lost counters split them. After each iteration the balances are checked against the
+ * approved transfers, so a request paid twice fails the run rather than just looking fast.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ApproveContentionBenchmark {
+
+    private static final String STARTING_BALANCE = "1000000000.00";
+    // Requests are spread over this many payers, so the winners' balance updates do not all queue on one account
+    private static final int PAYERS = 16;
+    // More than the threads can get through in one iteration, so the list never runs out
+    private static final int REQUESTS_PER_ITERATION = 200_000;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTransferDao transferDao;
+    private int[] transferIds;
+    private int[] payerUserIds;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        database = new BenchmarkDatabase(8);
+        database.seedUsers(PAYERS, STARTING_BALANCE);
+        jdbcTemplate = database.getJdbcTemplate();
+        transactionTemplate = database.getTransactionTemplate();
+        transferDao = new JdbcTransferDao(jdbcTemplate, new JdbcAccountDao(jdbcTemplate), event -> { });
+    }
+
+    @Setup(Level.Iteration)
+    public void seedRequests() {
+        jdbcTemplate.update("DELETE FROM transfer WHERE transfer_status_id = 1;");
+        // Request n asks payer n % PAYERS for $1.00 on behalf of the next account along
+        jdbcTemplate.update("INSERT INTO transfer (transfer_type_id, transfer_status_id, account_from, account_to, amount) " +
+                        "SELECT 1, 1, ? + (g % ?), ? + ((g + 1) % ?), 1.00 FROM generate_series(1, ?) g;",
+                BenchmarkDatabase.FIRST_ACCOUNT_ID, PAYERS, BenchmarkDatabase.FIRST_ACCOUNT_ID, PAYERS, REQUESTS_PER_ITERATION);
+        jdbcTemplate.execute("ANALYZE transfer;");
+        List<Map<String, Object>> requests = jdbcTemplate.queryForList(
+                "SELECT transfer_id, account_from FROM transfer WHERE transfer_status_id = 1 ORDER BY transfer_id;");
+        transferIds = new int[requests.size()];
+        payerUserIds = new int[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            transferIds[i] = (Integer) requests.get(i).get("transfer_id");
+            // seedUsers pairs user FIRST_USER_ID + i with account FIRST_ACCOUNT_ID + i
+            payerUserIds[i] = (Integer) requests.get(i).get("account_from")
+                    - BenchmarkDatabase.FIRST_ACCOUNT_ID + BenchmarkDatabase.FIRST_USER_ID;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkLedger() {
+        Integer wrongBalances = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM account a WHERE a.balance <> ?::numeric " +
+                "- COALESCE((SELECT SUM(amount) FROM transfer WHERE transfer_status_id = 2 AND account_from = a.account_id), 0) " +
+                "+ COALESCE((SELECT SUM(amount) FROM transfer WHERE transfer_status_id = 2 AND account_to = a.account_id), 0);",
+                Integer.class, STARTING_BALANCE);
+        if (wrongBalances != 0) {
+            throw new IllegalStateException(wrongBalances + " accounts do not match their approved transfers");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Where one thread is in the shared list, and how its attempts went. Reported as approvals won and lost per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Racer {
+
+        public long won;
+        public long lost;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            won = 0;
+            lost = 0;
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public boolean approve(Racer racer) {
+        if (racer.next == transferIds.length) {
+            throw new IllegalStateException("Ran out of pending requests; raise REQUESTS_PER_ITERATION");
+        }
+        int index = racer.next++;
+        try {
+            transactionTemplate.execute(status -> transferDao.approveTransfer(payerUserIds[index], transferIds[index]));
+            racer.won++;
+            return true;
+        } catch (TransferExceptions.TransferUpdateException e) {
+            racer.lost++;
+            return false;
+        }
+    }
+}
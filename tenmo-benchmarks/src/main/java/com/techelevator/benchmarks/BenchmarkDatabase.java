@@ -0,0 +1,95 @@
+package com.techelevator.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * A scratch database for the benchmarks that need Postgres. It is dropped and recreated from database/tenmo.sql on
+ * every trial, then filled with generate_series inserts, so runs never see each other's rows. Connection settings
+ * follow the server's TestingDatabaseConfig; TENMO_SCHEMA points at the schema script when not run from the module.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    private static final String DB_HOST = Objects.requireNonNullElse(System.getenv("DB_HOST"), "localhost");
+    private static final String DB_PORT = Objects.requireNonNullElse(System.getenv("DB_PORT"), "5432");
+    private static final String DB_NAME = Objects.requireNonNullElse(System.getenv("DB_NAME"), "TenmoBench");
+    private static final String DB_USERNAME = Objects.requireNonNullElse(System.getenv("DB_USERNAME"), "postgres");
+    private static final String DB_PASSWORD = Objects.requireNonNullElse(System.getenv("DB_PASSWORD"), "postgres1");
+    private static final String SCHEMA = Objects.requireNonNullElse(System.getenv("TENMO_SCHEMA"), "../database/tenmo.sql");
+
+    // Hashed once per JVM and shared by every seeded user, whose password is "password"
+    public static final String PASSWORD_HASH = new BCryptPasswordEncoder().encode("password");
+    public static final int FIRST_USER_ID = 1001;
+    public static final int FIRST_ACCOUNT_ID = 2001;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public BenchmarkDatabase(int poolSize) throws SQLException {
+        SingleConnectionDataSource adminDataSource = new SingleConnectionDataSource(
+                "jdbc:postgresql://" + DB_HOST + ":" + DB_PORT + "/postgres", DB_USERNAME, DB_PASSWORD, true);
+        JdbcTemplate admin = new JdbcTemplate(adminDataSource);
+        admin.update("DROP DATABASE IF EXISTS \"" + DB_NAME + "\";");
+        admin.update("CREATE DATABASE \"" + DB_NAME + "\";");
+        adminDataSource.destroy();
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url());
+        dataSource.setUsername(DB_USERNAME);
+        dataSource.setPassword(DB_PASSWORD);
+        dataSource.setMaximumPoolSize(poolSize);
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource(SCHEMA));
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public static String url() {
+        return String.format("jdbc:postgresql://%s:%s/%s?reWriteBatchedInserts=true", DB_HOST, DB_PORT, DB_NAME);
+    }
+
+    // Users FIRST_USER_ID.., each with one account FIRST_ACCOUNT_ID.. holding the given balance
+    public void seedUsers(int count, String balance) {
+        jdbcTemplate.update("INSERT INTO tenmo_user (username, password_hash) SELECT 'user' || g, ? FROM generate_series(1, ?) g;",
+                PASSWORD_HASH, count);
+        jdbcTemplate.update("INSERT INTO account (user_id, balance) SELECT user_id, ?::numeric FROM tenmo_user ORDER BY user_id;", balance);
+    }
+
+    // Approved sends from the given account, spread over the first `payees` other accounts
+    public void seedTransfersFrom(int accountId, int count, int payees) {
+        jdbcTemplate.update("INSERT INTO transfer (transfer_type_id, transfer_status_id, account_from, account_to, amount) " +
+                        "SELECT 2, 2, ?, ? + 1 + (g % ?), 1.00 FROM generate_series(1, ?) g;",
+                accountId, accountId, payees, count);
+        jdbcTemplate.execute("ANALYZE;");
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
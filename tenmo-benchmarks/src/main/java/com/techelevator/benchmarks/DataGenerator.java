@@ -0,0 +1,307 @@
+package com.techelevator.benchmarks;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Bulk-loads users, accounts and transfers through the COPY protocol, for tests that need production-sized tables.
+ * Rows are appended after any that already exist, and the id sequences are moved past them afterwards.
+ * <p>
+ * Activity is skewed the way real payment data is: both sides of every transfer are drawn from one Zipf distribution
+ * over the accounts, so a few busy accounts send and receive most of the money and most accounts see very little,
+ * and amounts are log-uniform from $0.01 to $1000. Transfers are mostly approved sends, with requests that were approved,
+ * rejected or left pending. Every user is named prefix + n with the password "password", and all share one BCrypt
+ * hash computed up front.
+ * <p>
+ * The ledger is consistent: each account starts with the server's $1000 and its stored balance is that plus the
+ * approved transfers it took part in, never below zero. The generator gets there by replaying the same seeded
+ * sequence twice, once to work out the final balances that the account rows need and once to write the transfers,
+ * so nothing proportional to the transfer count is held in memory.
+ * <p>
+ * Standalone use, with DB_USERNAME and DB_PASSWORD as for BenchmarkDatabase:
+ * <pre>
+ *   java -cp target/benchmarks.jar com.techelevator.benchmarks.DataGenerator \
+ *       --url=jdbc:postgresql://localhost:5432/postgres --users=1000000 --transfers=10000000
+ * </pre>
+ * Other options: --zipf-exponent=1.1, --seed=42, --user-prefix=user.
+ */
+public class DataGenerator {
+
+    private static final long STARTING_BALANCE_CENTS = 100_000;
+    private static final long MAX_AMOUNT_CENTS = 100_000;
+    private static final double LOG_MAX_AMOUNT = Math.log(MAX_AMOUNT_CENTS);
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+
+    private static final int TYPE_REQUEST = 1;
+    private static final int TYPE_SEND = 2;
+    private static final int STATUS_PENDING = 1;
+    private static final int STATUS_APPROVED = 2;
+    private static final int STATUS_REJECTED = 3;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final double zipfExponent;
+    private final long seed;
+    private final String userPrefix;
+
+    public DataGenerator(DataSource dataSource, double zipfExponent, long seed, String userPrefix) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.zipfExponent = zipfExponent;
+        this.seed = seed;
+        this.userPrefix = userPrefix;
+    }
+
+    public DataGenerator(DataSource dataSource) {
+        this(dataSource, 1.1, 42, "user");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                options.getOrDefault("url", "jdbc:postgresql://localhost:5432/postgres"),
+                Objects.requireNonNullElse(System.getenv("DB_USERNAME"), "postgres"),
+                Objects.requireNonNullElse(System.getenv("DB_PASSWORD"), "postgres1"), true);
+        try {
+            DataGenerator generator = new DataGenerator(dataSource,
+                    Double.parseDouble(options.getOrDefault("zipf-exponent", "1.1")),
+                    Long.parseLong(options.getOrDefault("seed", "42")),
+                    options.getOrDefault("user-prefix", "user"));
+            generator.generate(Integer.parseInt(options.getOrDefault("users", "100000")),
+                    Long.parseLong(options.getOrDefault("transfers", "1000000")));
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    /**
+     * Appends the given number of users, one account each, and transfers between those accounts, then rebuilds the
+     * indexes, advances the sequences and analyzes the tables. Everything up to the analyze runs in one transaction on
+     * one connection, so a load that fails part way leaves the tables, their indexes and their foreign keys as they
+     * were. Other sessions wait on the tables until it commits.
+     */
+    public void generate(int users, long transfers) throws SQLException, IOException {
+        if (users < 2) {
+            throw new IllegalArgumentException("At least two users are needed to have someone to pay");
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                load(connection, users, transfers);
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        long start = System.nanoTime();
+        jdbcTemplate.execute("ANALYZE tenmo_user, account, transfer;");
+        log("Analyzed", start);
+    }
+
+    private void load(Connection connection, int users, long transfers) throws SQLException, IOException {
+        JdbcTemplate loader = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        // Ids continue from the existing rows, starting where the schema's sequences start on an empty database
+        int firstUserId = loader.queryForObject("SELECT COALESCE(MAX(user_id), 1000) + 1 FROM tenmo_user;", Integer.class);
+        int firstAccountId = loader.queryForObject("SELECT COALESCE(MAX(account_id), 2000) + 1 FROM account;", Integer.class);
+        long firstTransferId = loader.queryForObject("SELECT COALESCE(MAX(transfer_id), 3000) + 1 FROM transfer;", Long.class);
+
+        long start = System.nanoTime();
+        long[] balances = replayLedger(users, transfers, null, firstAccountId, firstTransferId);
+        log(String.format("Replayed %,d transfers over %,d accounts", transfers, users), start);
+
+        start = System.nanoTime();
+        List<String> restoreStatements = dropIndexesAndForeignKeys(loader);
+        log(String.format("Dropped %d indexes and foreign keys", restoreStatements.size()), start);
+
+        start = System.nanoTime();
+        try (Writer rows = copyIn(pgConnection, "COPY tenmo_user (user_id, username, password_hash) FROM STDIN")) {
+            String hash = BenchmarkDatabase.PASSWORD_HASH;
+            for (int i = 0; i < users; i++) {
+                int userId = firstUserId + i;
+                rows.append(Integer.toString(userId)).append('\t')
+                        .append(userPrefix).append(Integer.toString(userId - 1000)).append('\t') // user1 is user_id 1001
+                        .append(hash).append('\n');
+            }
+        }
+        log(String.format("Copied %,d users", users), start);
+
+        start = System.nanoTime();
+        try (Writer rows = copyIn(pgConnection, "COPY account (account_id, user_id, balance) FROM STDIN")) {
+            for (int i = 0; i < users; i++) {
+                rows.append(Integer.toString(firstAccountId + i)).append('\t')
+                        .append(Integer.toString(firstUserId + i)).append('\t');
+                appendAmount(rows, balances[i]).append('\n');
+            }
+        }
+        log(String.format("Copied %,d accounts", users), start);
+
+        start = System.nanoTime();
+        try (Writer rows = copyIn(pgConnection, "COPY transfer (transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount) FROM STDIN")) {
+            replayLedger(users, transfers, rows, firstAccountId, firstTransferId);
+        }
+        log(String.format("Copied %,d transfers", transfers), start);
+
+        start = System.nanoTime();
+        for (String statement : restoreStatements) {
+            loader.execute(statement);
+        }
+        loader.queryForObject("SELECT setval('seq_user_id', (SELECT MAX(user_id) FROM tenmo_user));", Long.class);
+        loader.queryForObject("SELECT setval('seq_account_id', (SELECT MAX(account_id) FROM account));", Long.class);
+        if (transfers > 0) {
+            loader.queryForObject("SELECT setval('seq_transfer_id', (SELECT MAX(transfer_id) FROM transfer));", Long.class);
+        }
+        log(String.format("Restored %d indexes and foreign keys", restoreStatements.size()), start);
+    }
+
+    /**
+     * Runs the seeded transfer sequence, writing each row when rows is not null, and returns every account's final
+     * balance in cents. A payment larger than the payer's balance is cut down to it; a payer with nothing left turns
+     * the payment into a pending request, so no balance ever goes below zero.
+     */
+    private long[] replayLedger(int accounts, long transfers, Writer rows, int firstAccountId, long firstTransferId) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        ZipfSampler popularity = new ZipfSampler(accounts, zipfExponent, random.split());
+        long[] balances = new long[accounts];
+        Arrays.fill(balances, STARTING_BALANCE_CENTS);
+
+        for (long n = 0; n < transfers; n++) {
+            int from = popularity.next();
+            int to = popularity.next();
+            while (to == from) {
+                to = random.nextInt(accounts);
+            }
+            long cents = Math.max(1, (long) Math.exp(random.nextDouble() * LOG_MAX_AMOUNT));
+
+            double kind = random.nextDouble();
+            int type = kind < 0.80 ? TYPE_SEND : TYPE_REQUEST;
+            int status = kind < 0.90 ? STATUS_APPROVED : kind < 0.95 ? STATUS_PENDING : STATUS_REJECTED;
+            if (status == STATUS_APPROVED) {
+                if (balances[from] == 0) {
+                    type = TYPE_REQUEST;
+                    status = STATUS_PENDING;
+                } else {
+                    cents = Math.min(cents, balances[from]);
+                    balances[from] -= cents;
+                    balances[to] += cents;
+                }
+            }
+
+            if (rows != null) {
+                rows.append(Long.toString(firstTransferId + n)).append('\t')
+                        .append((char) ('0' + type)).append('\t')
+                        .append((char) ('0' + status)).append('\t')
+                        .append(Integer.toString(firstAccountId + from)).append('\t')
+                        .append(Integer.toString(firstAccountId + to)).append('\t');
+                appendAmount(rows, cents).append('\n');
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Indexes that do not back a constraint are cheaper to build once at the end than to maintain row by row, and a
+     * foreign key re-added afterwards is checked with one join instead of a trigger firing per row. Drops both and
+     * returns the statements that put them back, indexes first.
+     */
+    private static List<String> dropIndexesAndForeignKeys(JdbcTemplate loader) {
+        List<Map<String, Object>> dropped = loader.queryForList(
+                "SELECT format('DROP INDEX %s', i.indexrelid::regclass) AS drop, pg_get_indexdef(i.indexrelid) AS restore FROM pg_index i " +
+                "WHERE i.indrelid IN ('tenmo_user'::regclass, 'account'::regclass, 'transfer'::regclass) " +
+                "AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid) " +
+                "UNION ALL " +
+                "SELECT format('ALTER TABLE %s DROP CONSTRAINT %I', c.conrelid::regclass, c.conname), " +
+                "format('ALTER TABLE %s ADD CONSTRAINT %I %s', c.conrelid::regclass, c.conname, pg_get_constraintdef(c.oid)) FROM pg_constraint c " +
+                "WHERE c.contype = 'f' AND c.conrelid IN ('account'::regclass, 'transfer'::regclass);");
+        List<String> restoreStatements = new ArrayList<>();
+        for (Map<String, Object> statements : dropped) {
+            loader.execute((String) statements.get("drop"));
+            restoreStatements.add((String) statements.get("restore"));
+        }
+        return restoreStatements;
+    }
+
+    private static Writer copyIn(PGConnection connection, String sql) throws SQLException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(connection, sql, COPY_BUFFER_BYTES), StandardCharsets.UTF_8), COPY_BUFFER_BYTES);
+    }
+
+    private static Writer appendAmount(Writer rows, long cents) throws IOException {
+        rows.append(Long.toString(cents / 100)).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            rows.append('0');
+        }
+        return rows.append(Long.toString(fraction));
+    }
+
+    private static void log(String message, long startNanos) {
+        System.out.printf("%s in %.1fs%n", message, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * Draws 0..n-1 with probability proportional to 1 / (rank + 1)^exponent, by binary search over the cumulative
+     * weights. Ranks are shuffled onto indexes, so the busiest accounts are spread through the id range.
+     */
+    private static class ZipfSampler {
+
+        private final double[] cumulative;
+        private final int[] indexByRank;
+        private final SplittableRandom random;
+
+        ZipfSampler(int n, double exponent, SplittableRandom random) {
+            this.random = random;
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = total;
+            }
+            indexByRank = new int[n];
+            for (int i = 0; i < n; i++) {
+                indexByRank[i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = indexByRank[i];
+                indexByRank[i] = indexByRank[j];
+                indexByRank[j] = swap;
+            }
+        }
+
+        int next() {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int rank = Arrays.binarySearch(cumulative, target);
+            return indexByRank[rank >= 0 ? rank : Math.min(-rank - 1, cumulative.length - 1)];
+        }
+    }
+}
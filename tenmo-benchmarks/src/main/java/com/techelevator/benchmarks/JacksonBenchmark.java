@@ -0,0 +1,61 @@
+package com.techelevator.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techelevator.tenmo.model.Account;
+import com.techelevator.tenmo.model.Transfer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response serialization for lists of Transfer and Account, at the sizes a history page, a full history and the
+ * export produce. The ObjectMapper comes from Jackson2ObjectMapperBuilder, which is what Spring Boot configures.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JacksonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<Transfer> transfers;
+    private List<Account> accounts;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        transfers = new ArrayList<>();
+        accounts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Transfer transfer = new Transfer();
+            transfer.setTransferId(3001 + i);
+            transfer.setTransferTypeId(2);
+            transfer.setTransferStatusId(2);
+            transfer.setAccountFrom(2001);
+            transfer.setAccountTo(2002 + i);
+            transfer.setAmount(new BigDecimal("12.50"));
+            transfers.add(transfer);
+            accounts.add(new Account(2001 + i, 1001 + i, new BigDecimal("1000.00")));
+        }
+    }
+
+    @Benchmark
+    public byte[] transfers() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transfers);
+    }
+
+    @Benchmark
+    public byte[] accounts() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(accounts);
+    }
+}
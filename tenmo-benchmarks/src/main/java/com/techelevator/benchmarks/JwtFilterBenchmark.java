@@ -0,0 +1,60 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.security.jwt.JWTFilter;
+import com.techelevator.tenmo.security.jwt.TokenProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWTFilter.doFilter end to end with an empty downstream chain: header lookup, token resolution and installing the
+ * Authentication. A new request and response are built per call, as the servlet container would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtFilterBenchmark {
+
+    private static final FilterChain END_OF_CHAIN = (request, response) -> { };
+
+    private JWTFilter filter;
+    private String bearerToken;
+
+    @Setup
+    public void setup() {
+        TokenProvider tokenProvider = TokenProviderBenchmark.newTokenProvider();
+        filter = new JWTFilter(tokenProvider);
+        bearerToken = "Bearer " + tokenProvider.createToken(TokenProviderBenchmark.USER, 1001, 2001, false);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse withToken() throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/1001/account");
+        request.addHeader(JWTFilter.AUTHORIZATION_HEADER, bearerToken);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, END_OF_CHAIN);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse withoutToken() throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/1001/account");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, END_OF_CHAIN);
+        return response;
+    }
+}
@@ -0,0 +1,89 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.security.TenmoPrincipal;
+import com.techelevator.tenmo.security.jwt.TokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.security.Key;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenProvider operations that run on every login or every authenticated request. perCallParserBaseline is what
+ * JWTFilter did before the parser was built once: two parses, each with a parser built for the call.
+ * validateThenGetAuthentication keeps the two parses but reuses the parser, and resolveAuthentication is the current
+ * path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenProviderBenchmark {
+
+    // Same key length as jwt.base64-secret, so signing costs the same
+    static final String SECRET = "T9GKvpb3oX5qqo3sd6+OJ2iqldexr32h7FHMpkgON+6yAtr2gfJOQkjt4mR9b7rCPL3wip8vgXzkr2LOpbAnitVQvHnIO2tlaQdnPo+xc10/KtcEBDMQV6nPn41+ScZ9wbvTIQn2+FUoJkQhXFcWRe4r4CbDKzZ73Z4ZyhMmJ4n8crYDl7dR3XjScLq4sO0BXYHK1qj6u7JPABoqQXv83uycysTt/TtDIxSl5r5+M7U/99hHvdLmfWBUlCoorhGodggZow==";
+    static final Authentication USER = new UsernamePasswordAuthenticationToken("user1", "",
+            AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+    private TokenProvider tokenProvider;
+    private Key key;
+    private String token;
+
+    @Setup
+    public void setup() {
+        tokenProvider = newTokenProvider();
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        token = tokenProvider.createToken(USER, 1001, 2001, false);
+    }
+
+    static TokenProvider newTokenProvider() {
+        TokenProvider tokenProvider = new TokenProvider(SECRET, 86400, 108000, 2592000, 10000);
+        tokenProvider.afterPropertiesSet();
+        return tokenProvider;
+    }
+
+    @Benchmark
+    public String createToken() {
+        return tokenProvider.createToken(USER, 1001, 2001, false);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return tokenProvider.validateToken(token);
+    }
+
+    @Benchmark
+    public Authentication getAuthentication() {
+        return tokenProvider.getAuthentication(token);
+    }
+
+    @Benchmark
+    public Authentication perCallParserBaseline() {
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        List<GrantedAuthority> authorities = AuthorityUtils.commaSeparatedStringToAuthorityList(claims.get("auth", String.class));
+        TenmoPrincipal principal = new TenmoPrincipal(claims.getSubject(), authorities,
+                claims.get("uid", Integer.class), claims.get("aid", Integer.class));
+        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    }
+
+    @Benchmark
+    public Authentication validateThenGetAuthentication() {
+        return tokenProvider.validateToken(token) ? tokenProvider.getAuthentication(token) : null;
+    }
+
+    @Benchmark
+    public Authentication resolveAuthentication() {
+        return tokenProvider.resolveAuthentication(token);
+    }
+}
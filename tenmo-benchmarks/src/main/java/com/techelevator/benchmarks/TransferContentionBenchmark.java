@@ -0,0 +1,61 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.model.Transfer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent sends between a small set of accounts, so the row locks taken by transferFunds are fought over.
+ * Lowering hotAccounts raises contention; at 2 every send queues behind the one before it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TransferContentionBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"2", "16", "256"})
+    public int hotAccounts;
+
+    private BenchmarkDatabase database;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTransferDao transferDao;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        database = new BenchmarkDatabase(8);
+        database.seedUsers(hotAccounts, "1000000000.00");
+        transactionTemplate = database.getTransactionTemplate();
+        transferDao = new JdbcTransferDao(database.getJdbcTemplate(), new JdbcAccountDao(database.getJdbcTemplate()), event -> { });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Transfer send() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(hotAccounts);
+        int to = (from + 1 + random.nextInt(hotAccounts - 1)) % hotAccounts;
+
+        Transfer transfer = new Transfer();
+        transfer.setAccountTo(BenchmarkDatabase.FIRST_ACCOUNT_ID + to);
+        transfer.setAmount(AMOUNT);
+        return transactionTemplate.execute(status -> transferDao.sendTransfer(BenchmarkDatabase.FIRST_USER_ID + from,
+                BenchmarkDatabase.FIRST_ACCOUNT_ID + from, transfer, null));
+    }
+}
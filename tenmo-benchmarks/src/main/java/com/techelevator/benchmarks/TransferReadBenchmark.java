@@ -0,0 +1,89 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.model.TransferPageDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History reads against a seeded Postgres. daoHistory reads one page of historySize transfers through the DAO's
+ * positional RowMapper; rowSetHistory runs the same page query through a disconnected SqlRowSet with mapping by column
+ * name, the style the DAOs started with. The history is historySize sends from one of a hundred users to the others.
+ * AccountLookupBenchmark covers the account lookup against large tables.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferReadBenchmark {
+
+    // JdbcTransferDao's first-page history query
+    private static final String HISTORY_PAGE_SQL =
+            "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM (" +
+            "SELECT t.* FROM account a CROSS JOIN LATERAL (" +
+            "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer " +
+            "WHERE account_from = a.account_id AND transfer_id < ? ORDER BY transfer_id DESC LIMIT ?) t " +
+            "WHERE a.user_id = ? " +
+            "UNION ALL " +
+            "SELECT t.* FROM account a CROSS JOIN LATERAL (" +
+            "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer " +
+            "WHERE account_to = a.account_id AND transfer_id < ? ORDER BY transfer_id DESC LIMIT ?) t " +
+            "WHERE a.user_id = ?" +
+            ") page ORDER BY transfer_id DESC LIMIT ?;";
+
+    @Param({"10", "100", "1000"})
+    public int historySize;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcTransferDao transferDao;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        database = new BenchmarkDatabase(1);
+        database.seedUsers(100, "1000.00");
+        database.seedTransfersFrom(BenchmarkDatabase.FIRST_ACCOUNT_ID, historySize, 99);
+        jdbcTemplate = database.getJdbcTemplate();
+        transferDao = new JdbcTransferDao(jdbcTemplate, new JdbcAccountDao(jdbcTemplate), event -> { });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public TransferPageDto daoHistory() {
+        return transferDao.getTransferHistoryPageByUserId(BenchmarkDatabase.FIRST_USER_ID, null, historySize);
+    }
+
+    @Benchmark
+    public List<Transfer> rowSetHistory() {
+        List<Transfer> transfers = new ArrayList<>();
+        // One row past the page, as the DAO fetches to find the next cursor
+        SqlRowSet results = jdbcTemplate.queryForRowSet(HISTORY_PAGE_SQL,
+                Integer.MAX_VALUE, historySize + 1, BenchmarkDatabase.FIRST_USER_ID,
+                Integer.MAX_VALUE, historySize + 1, BenchmarkDatabase.FIRST_USER_ID, historySize + 1);
+        while (results.next()) {
+            Transfer transfer = new Transfer();
+            transfer.setTransferId(results.getInt("transfer_id"));
+            transfer.setTransferTypeId(results.getInt("transfer_type_id"));
+            transfer.setTransferStatusId(results.getInt("transfer_status_id"));
+            transfer.setAccountFrom(results.getInt("account_from"));
+            transfer.setAccountTo(results.getInt("account_to"));
+            transfer.setAmount(results.getBigDecimal("amount"));
+            transfers.add(transfer);
+        }
+        return transfers;
+    }
+}
@@ -0,0 +1,77 @@
+package com.techelevator.benchmarks;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.model.Transfer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer writes against Postgres. insertThenSelect is the insert followed by a read-back that createTransfer used
+ * before it switched to RETURNING the full row; send is the whole sendTransfer transaction, balance locks included.
+ * Sample time reports latency percentiles, so the two createTransfer variants can be compared at p50 and p99.
+ * Balances are seeded high enough that no trial runs an account dry.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferWriteBenchmark {
+
+    // Writes the same row as createTransfer, creator and conflict check included, so only the read-back differs
+    private static final String INSERT_SQL = "INSERT INTO transfer (transfer_type_id, transfer_status_id, account_from, account_to, amount, created_by, idempotency_key) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (created_by, idempotency_key) DO NOTHING RETURNING transfer_id;";
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTransferDao transferDao;
+    private Transfer request;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        database = new BenchmarkDatabase(1);
+        database.seedUsers(2, "1000000000.00");
+        jdbcTemplate = database.getJdbcTemplate();
+        transactionTemplate = database.getTransactionTemplate();
+        transferDao = new JdbcTransferDao(jdbcTemplate, new JdbcAccountDao(jdbcTemplate), event -> { });
+
+        request = new Transfer();
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(BenchmarkDatabase.FIRST_ACCOUNT_ID);
+        request.setAccountTo(BenchmarkDatabase.FIRST_ACCOUNT_ID + 1);
+        request.setAmount(new BigDecimal("1.00"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Transfer insertThenSelect() {
+        Integer transferId = jdbcTemplate.queryForObject(INSERT_SQL, Integer.class,
+                request.getTransferTypeId(), request.getTransferStatusId(),
+                request.getAccountFrom(), request.getAccountTo(), request.getAmount(), BenchmarkDatabase.FIRST_USER_ID, null);
+        return transferDao.getTransferByOnlyTransferId(transferId);
+    }
+
+    @Benchmark
+    public Transfer insertReturning() {
+        return transferDao.createTransfer(BenchmarkDatabase.FIRST_USER_ID, request, null);
+    }
+
+    @Benchmark
+    public Transfer send() {
+        return transactionTemplate.execute(status ->
+                transferDao.sendTransfer(BenchmarkDatabase.FIRST_USER_ID, BenchmarkDatabase.FIRST_ACCOUNT_ID, request, null));
+    }
+}
@@ -1,12 +1,12 @@
 package com.techelevator.tenmo;
 
-import com.techelevator.tenmo.model.Account;
 import com.techelevator.tenmo.model.AuthenticatedUser;
 import com.techelevator.tenmo.model.Transfer;
 import com.techelevator.tenmo.model.UserCredentials;
 import com.techelevator.tenmo.services.AccountService;
 import com.techelevator.tenmo.services.AuthenticationService;
 import com.techelevator.tenmo.services.ConsoleService;
+import com.techelevator.tenmo.services.TransferEventService;
 import com.techelevator.tenmo.services.TransferService;
 
 import java.math.BigDecimal;
@@ -14,11 +14,13 @@ import java.math.BigDecimal;
 public class App {
 
     private static final String API_BASE_URL = "http://localhost:8080/";
+    private static final long TOKEN_REFRESH_MARGIN_MILLIS = 60000;
 
     private final ConsoleService consoleService = new ConsoleService();
     private final AuthenticationService authenticationService = new AuthenticationService(API_BASE_URL);
     private final AccountService accountService = new AccountService(API_BASE_URL);
     private final TransferService transferService = new TransferService(API_BASE_URL);
+    private final TransferEventService transferEventService = new TransferEventService(API_BASE_URL);
 
     private AuthenticatedUser currentUser;
 
@@ -31,6 +33,8 @@ public class App {
         consoleService.printGreeting();
         loginMenu();
         if (currentUser != null) {
+            // Reads currentUser on every reconnect, so token refreshes and a fresh login are followed
+            transferEventService.start(() -> currentUser);
             mainMenu();
         }
     }
@@ -72,6 +76,9 @@ public class App {
     private void mainMenu() {
         int menuSelection = -1;
         while (menuSelection != 0) {
+            if (!refreshSessionIfExpiring()) {
+                return;
+            }
             consoleService.printMainMenu();
             menuSelection = consoleService.promptForMenuSelection("Please choose an option: ");
             if (menuSelection == 1) {
@@ -97,10 +104,32 @@ public class App {
         }
     }
 
+    // Swaps in a fresh access token shortly before the current one expires; asks for a login only if that fails
+    private boolean refreshSessionIfExpiring() {
+        if (!currentUser.isTokenExpiring(TOKEN_REFRESH_MARGIN_MILLIS)) {
+            return true;
+        }
+        AuthenticatedUser refreshedUser = authenticationService.refresh(currentUser);
+        if (refreshedUser != null) {
+            currentUser = refreshedUser;
+            return true;
+        }
+        System.out.println("Your session has expired. Please log in again.");
+        currentUser = null;
+        loginMenu();
+        return currentUser != null;
+    }
+
+    // The pending list is fetched on entry and then again only when the event stream reports a change;
+    // without a live stream it is fetched on every pass as before
     private void approvalMenu() {
         int menuSelection = -1;
+        Transfer[] pendingRequests = null;
         while (menuSelection != 0) {
-            viewPendingRequests();
+            if (transferEventService.takePendingChanged() || pendingRequests == null || !transferEventService.isConnected()) {
+                pendingRequests = transferService.getPendingRequests(currentUser);
+            }
+            transferService.printPendingRequests(currentUser, pendingRequests);
             consoleService.printApprovalRejection();
             menuSelection = consoleService.promptForMenuSelection("Please choose an option: ");
             if (menuSelection == 1) {
@@ -124,40 +153,28 @@ public class App {
         transferService.getTransferHistory(currentUser);
 	}
 
-	private void viewPendingRequests() { transferService.getPendingRequests(currentUser); }
-
     private void handleApprovalRequest() {
-        // Below will change the transfer from pending to approved, and return true.
-        // If true, then will execute sendBucks method to change balances for both accounts
-        // For requester, requester's current balance + amount to be transferred
-        // For sender, sender's current balance - amount to be transferred
+        // For approval : currentUser = money sender.
+        // The server checks the balance, pays the requester and marks the transfer Approved in one step
         int recipientTransferId = consoleService.promptForInt("Please input transfer ID: ");
-        // For approval :
-        // currentUser = money receiver,
         if (transferService.approveRequest(recipientTransferId, currentUser)) {
-            // Get the transfer by using the transfer ID
-            Transfer transfer = transferService.getTransferByTransferId(currentUser, recipientTransferId);
-            // Update balances for both current user(current balance - amount) and the recipient(current balance + amount)
-            // 1. Update account with new balance for current user (current balance - amount)
-            Account updatedAccountForCurrentUser = accountService.getAccountByUserId(currentUser);
-            updatedAccountForCurrentUser.setBalance(updatedAccountForCurrentUser.getBalance().subtract(transfer.getAmount()));
-            // 2. Update account with new balance for recipient user (current balance + amount)
-            Account updatedAccountForTargetUser = accountService.getAccountByAccountId(currentUser, transfer.getAccountTo());
-            updatedAccountForTargetUser.setBalance(updatedAccountForTargetUser.getBalance().add(transfer.getAmount()));
-            // 3. Update balances for both users
-            accountService.updateAccountBucks(updatedAccountForCurrentUser, currentUser, updatedAccountForCurrentUser.getAccount_id());
-            accountService.updateAccountBucks(updatedAccountForTargetUser, currentUser, transfer.getAccountTo());
+            transferEventService.markPendingChanged();
+            System.out.println("Request " + recipientTransferId + " approved.");
         }
     }
 
-    private void handleRejectRequest() { transferService.rejectRequest(currentUser); }
+    private void handleRejectRequest() {
+        if (transferService.rejectRequest(currentUser)) {
+            transferEventService.markPendingChanged();
+        }
+    }
 
     // Request : currentUser = money receiver, accountFromId = money sender
     private void requestBucks() {
         int accountFromId = consoleService.promptForInt("Please choose recipient's account ID you are requesting money from: ");
         BigDecimal amount = consoleService.promptForBigDecimal("Please input amount in two decimal: ");
 
-        if (accountFromId == accountService.getAccountByUserId(currentUser).getAccount_id()) {
+        if (accountFromId == currentUser.getAccountId()) {
             System.out.println("Error: You cannot request money from yourself.");
             return;
         }
@@ -166,48 +183,28 @@ public class App {
             System.out.println("Error: Amount must be greater than zero.");
             return;
         }
-        // POST into Transfer table, need to get account object by user ID
+        // POST into Transfer table, the current user's account ID came with the login response
         // transfer_status_id & transfer_type_id = 1 for 'Pending' and 'Request'
-        transferService.postTransfer(1, accountFromId, amount, currentUser, accountService.getAccountByUserId(currentUser));
+        transferService.postRequest(accountFromId, amount, currentUser);
     }
 
-    //TODO
 	private void sendBucks() {
-        while (true) {
-            int accountToId = consoleService.promptForInt("Please choose recipient's account ID: ");
-            BigDecimal amount = consoleService.promptForBigDecimal("Please input amount with 2 decimal places (examples: 10.50, 20, 19.69): ");
-
-            // checking if user is sending bucks to themselves
-            if (accountToId == accountService.getAccountByUserId(currentUser).getAccount_id()) {
-                System.out.println("Error: You cannot send money to yourself.");
-               return;
-            }
+        int accountToId = consoleService.promptForInt("Please choose recipient's account ID: ");
+        BigDecimal amount = consoleService.promptForBigDecimal("Please input amount with 2 decimal places (examples: 10.50, 20, 19.69): ");
 
-            //checking if the user is sending 0 or negative amount
-            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-                System.out.println("Error: Amount must be greater than zero.");
-                return;
-            }
+        //checking if the user is sending 0 or negative amount
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            System.out.println("Error: Amount must be greater than zero.");
+            return;
+        }
 
-            // Checking if amount is less than/equal to the current balance of the current user
-            if (amount.compareTo(accountService.getBalance(currentUser)) <= 0) {
-                // POST into Transfer table
-                // transfer_status_id & transfer_type_id = 2 for 'Approved' and 'Send'
-                transferService.postTransfer(2, accountToId, amount, currentUser, accountService.getAccountByUserId(currentUser));
-                // Change balances for currentUser and receiver in account DB
-                // 1. Update account with new balance for current user (current balance - amount)
-                Account updatedAccountForCurrentUser = accountService.getAccountByUserId(currentUser);
-                updatedAccountForCurrentUser.setBalance(updatedAccountForCurrentUser.getBalance().subtract(amount));
-                // 2. Update account with new balance for recipient user (current balance + amount)
-                Account updatedAccountForTargetUser = accountService.getAccountByAccountId(currentUser, accountToId);
-                updatedAccountForTargetUser.setBalance(updatedAccountForTargetUser.getBalance().add(amount));
-                // 3. Update balances for both users
-                accountService.updateAccountBucks(updatedAccountForCurrentUser, currentUser, updatedAccountForCurrentUser.getAccount_id());
-                accountService.updateAccountBucks(updatedAccountForTargetUser, currentUser, accountToId);
-                break;
-            } else {
-                System.out.println("Not enough TE Bucks in account!");
-            }
+        // The server checks the recipient and the balance, then moves the money and records the
+        // 'Send' transfer (transfer_status_id & transfer_type_id = 2) in one transaction
+        Transfer sent = transferService.sendBucks(accountToId, amount, currentUser);
+        if (sent == null) {
+            System.out.println("Unable to send TE Bucks. You cannot send money to yourself or more than your balance.");
+        } else {
+            System.out.println("Sent $" + sent.getAmount() + " to account " + sent.getAccountTo() + ". Transfer ID: " + sent.getTransferId());
         }
 	}
 }
\ No newline at end of file
@@ -3,7 +3,12 @@ package com.techelevator.tenmo.model;
 public class AuthenticatedUser {
 	
 	private String token;
+	private String refreshToken;
+	private long expiresIn;
 	private User user;
+	private int accountId;
+	// Set when the response is read, so expiresIn can be turned into a deadline
+	private final long receivedAtMillis = System.currentTimeMillis();
 	
 	public String getToken() {
 		return token;
@@ -17,4 +22,25 @@ public class AuthenticatedUser {
 	public void setUser(User user) {
 		this.user = user;
 	}
-}
\ No newline at end of file
+	public int getAccountId() {
+		return accountId;
+	}
+	public void setAccountId(int accountId) {
+		this.accountId = accountId;
+	}
+	public String getRefreshToken() {
+		return refreshToken;
+	}
+	public void setRefreshToken(String refreshToken) {
+		this.refreshToken = refreshToken;
+	}
+	public long getExpiresIn() {
+		return expiresIn;
+	}
+	public void setExpiresIn(long expiresIn) {
+		this.expiresIn = expiresIn;
+	}
+	public boolean isTokenExpiring(long marginMillis) {
+		return System.currentTimeMillis() + marginMillis >= receivedAtMillis + expiresIn * 1000;
+	}
+}
@@ -2,7 +2,7 @@ package com.techelevator.tenmo.services;
 
 import com.techelevator.tenmo.model.Account;
 import com.techelevator.tenmo.model.AuthenticatedUser;
-import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.model.PayeeDto;
 import com.techelevator.util.BasicLogger;
 import org.springframework.http.*;
 import org.springframework.web.client.ResourceAccessException;
@@ -36,17 +36,18 @@ public class AccountService {
         return accounts;
     }
 
-    public Account[] getAllAccountsAndUsernames(AuthenticatedUser currentUser) {
-        Account[] accounts = null;
+    // Prints every account with its owner's username for the payee picker, from a single call
+    public PayeeDto[] getAllAccountsAndUsernames(AuthenticatedUser currentUser) {
+        PayeeDto[] payees = null;
         try {
-            ResponseEntity<Account[]> response =
-                    restTemplate.exchange(baseUrl + "user/all/account", HttpMethod.GET, makeAuthEntity(currentUser), Account[].class);
-            accounts = response.getBody();
+            ResponseEntity<PayeeDto[]> response =
+                    restTemplate.exchange(baseUrl + "user/payees", HttpMethod.GET, makeAuthEntity(currentUser), PayeeDto[].class);
+            payees = response.getBody();
             System.out.println("-------------------------------------");
             System.out.println("         Accounts in Database        ");
             System.out.println("-------------------------------------");
-            for (Account account : accounts) {
-                System.out.println("Username: " + getUserNameByAccountId(currentUser, account.getAccount_id()) + " || Account Id: " + account.getAccount_id());
+            for (PayeeDto payee : payees) {
+                System.out.println("Username: " + payee.getUsername() + " || Account Id: " + payee.getAccountId());
             }
             System.out.println("-------------------------------------");
         } catch (RestClientResponseException e) {
@@ -54,7 +55,7 @@ public class AccountService {
         } catch (ResourceAccessException e) {
             BasicLogger.log("No account found: " + e.getMessage());
         }
-        return accounts;
+        return payees;
     }
 
     public BigDecimal getBalance(AuthenticatedUser currentUser) {
@@ -96,49 +97,10 @@ public class AccountService {
         return newAccount;
     }
 
-    public void updateAccountBucks(Account updatedAccount, AuthenticatedUser currentUser, int accountId) {
-        HttpEntity<Account> entity = makeAccountEntity(updatedAccount, currentUser);
-        try {
-            restTemplate.exchange(baseUrl + "user/{id}/account/{accountId}", HttpMethod.PUT,
-                    entity, Account.class, currentUser.getUser().getId(), accountId);
-        } catch (RestClientResponseException | ResourceAccessException e) {
-            BasicLogger.log("Unable to update balance: " + e.getMessage());
-        }
-    }
-
     //
     // Helper methods
     //
 
-    private String getUserNameByAccountId(AuthenticatedUser currentUser, int accountId) {
-        String userName = null;
-        int userId = 0;
-        try {
-            ResponseEntity<Account[]> responseAccount = restTemplate.exchange(baseUrl + "user/all/account", HttpMethod.GET, makeAuthEntity(currentUser), Account[].class);
-            Account[] accounts = responseAccount.getBody();
-            for (Account account : accounts) {
-                if (account.getAccount_id() == accountId) {
-                    userId = account.getUser_id();
-                }
-            }
-            ResponseEntity<User> responseUser = restTemplate.exchange(baseUrl + "user/userId/{id}", HttpMethod.GET, makeAuthEntity(currentUser), User.class, userId);
-            User user = responseUser.getBody();
-            userName = user.getUsername();
-        } catch (RestClientResponseException e) {
-            BasicLogger.log("Error retrieving pending Account/User record: " + e.getRawStatusCode() + " : " + e.getStatusText());
-        } catch (ResourceAccessException e) {
-            BasicLogger.log("No account/username found!" + e.getMessage());
-        }
-        return userName;
-    }
-
-    private HttpEntity<Account> makeAccountEntity(Account account, AuthenticatedUser currentUser) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(currentUser.getToken());
-        return new HttpEntity<>(account, headers);
-    }
-
     private HttpEntity<Account> makeAuthEntity(AuthenticatedUser currentUser) {
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(currentUser.getToken());
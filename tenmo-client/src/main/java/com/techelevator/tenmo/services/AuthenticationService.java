@@ -11,6 +11,7 @@ import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 import com.techelevator.tenmo.model.AuthenticatedUser;
+import com.techelevator.tenmo.model.RefreshTokenDto;
 import com.techelevator.tenmo.model.UserCredentials;
 
 public class AuthenticationService {
@@ -35,6 +36,23 @@ public class AuthenticationService {
         return user;
     }
 
+    // Gets a new access token with the refresh token from login, so the password is not sent and hashed again
+    public AuthenticatedUser refresh(AuthenticatedUser currentUser) {
+        RefreshTokenDto refreshTokenDto = new RefreshTokenDto();
+        refreshTokenDto.setRefreshToken(currentUser.getRefreshToken());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        AuthenticatedUser user = null;
+        try {
+            ResponseEntity<AuthenticatedUser> response = restTemplate.exchange(baseUrl + "refresh", HttpMethod.POST,
+                    new HttpEntity<>(refreshTokenDto, headers), AuthenticatedUser.class);
+            user = response.getBody();
+        } catch (RestClientResponseException | ResourceAccessException e) {
+            BasicLogger.log(e.getMessage());
+        }
+        return user;
+    }
+
     public boolean register(UserCredentials credentials) {
         HttpEntity<UserCredentials> entity = createCredentialsEntity(credentials);
         boolean success = false;
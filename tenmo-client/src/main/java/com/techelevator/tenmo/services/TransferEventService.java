@@ -0,0 +1,152 @@
+package com.techelevator.tenmo.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techelevator.tenmo.model.AuthenticatedUser;
+import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.util.BasicLogger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Listens on the server's transfer event stream in the background, prints a notice when a request comes in or
+// one of ours is answered, and remembers whether the pending list changed so the approval menu only fetches it then
+public class TransferEventService {
+
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+    private static final int PENDING = 1;
+    private static final int APPROVED = 2;
+
+    private final String baseUrl;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean connected = new AtomicBoolean();
+    private final AtomicBoolean pendingChanged = new AtomicBoolean(true);
+    private volatile Supplier<AuthenticatedUser> currentUser;
+    private Thread listener;
+
+    public TransferEventService(String url) {
+        this.baseUrl = url;
+    }
+
+    // The supplier is asked for the user on every reconnect, so a refreshed token is picked up
+    public synchronized void start(Supplier<AuthenticatedUser> currentUser) {
+        this.currentUser = currentUser;
+        if (listener == null) {
+            listener = new Thread(this::listen, "transfer-events");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    // True once after each change to the pending list; while disconnected changes can be missed, so callers fetch anyway
+    public boolean takePendingChanged() {
+        return pendingChanged.getAndSet(false);
+    }
+
+    public void markPendingChanged() {
+        pendingChanged.set(true);
+    }
+
+    private void listen() {
+        long delay = MIN_RECONNECT_DELAY_MILLIS;
+        while (!Thread.currentThread().isInterrupted()) {
+            AuthenticatedUser user = currentUser.get();
+            if (user != null) {
+                try {
+                    if (stream(user)) {
+                        delay = MIN_RECONNECT_DELAY_MILLIS;
+                    }
+                } catch (IOException e) {
+                    BasicLogger.log("Transfer event stream closed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    connected.set(false);
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+    }
+
+    // Reads one connection until the server closes it; returns whether it was accepted
+    private boolean stream(AuthenticatedUser user) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "user/" + user.getUser().getId() + "/transfer/events"))
+                .header("Authorization", "Bearer " + user.getToken())
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        try (Stream<String> lines = response.body()) {
+            if (response.statusCode() != 200) {
+                BasicLogger.log("Transfer event stream refused: " + response.statusCode());
+                return false;
+            }
+            connected.set(true);
+            // Anything may have changed while we were not listening
+            pendingChanged.set(true);
+            String name = null;
+            StringBuilder data = new StringBuilder();
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                if (line.isEmpty()) {
+                    if (name != null && data.length() > 0) {
+                        onEvent(name, data.toString(), user.getAccountId());
+                    }
+                    name = null;
+                    data.setLength(0);
+                } else if (line.startsWith("event:")) {
+                    name = line.substring("event:".length()).trim();
+                } else if (line.startsWith("data:")) {
+                    data.append(line.substring("data:".length()).trim());
+                }
+            }
+            return true;
+        }
+    }
+
+    private void onEvent(String name, String data, int accountId) {
+        Transfer transfer;
+        try {
+            transfer = objectMapper.readValue(data, Transfer.class);
+        } catch (IOException e) {
+            BasicLogger.log("Unreadable transfer event: " + e.getMessage());
+            return;
+        }
+        if (transfer.getAccountFrom() == accountId) {
+            // Requests we are asked to pay are the pending list, and any update may take one off it
+            if (name.equals("updated") || transfer.getTransferStatusId() == PENDING) {
+                pendingChanged.set(true);
+            }
+            if (name.equals("created") && transfer.getTransferStatusId() == PENDING) {
+                System.out.printf("%n*** New request %d: account %d asks you for $ %s ***%n", transfer.getTransferId(),
+                        transfer.getAccountTo(), transfer.getAmount());
+            }
+        } else if (transfer.getAccountTo() == accountId) {
+            if (name.equals("created") && transfer.getTransferStatusId() == APPROVED) {
+                System.out.printf("%n*** Received $ %s from account %d ***%n", transfer.getAmount(), transfer.getAccountFrom());
+            } else if (name.equals("updated")) {
+                System.out.printf("%n*** Your request %d was %s ***%n", transfer.getTransferId(),
+                        transfer.getTransferStatusId() == APPROVED ? "approved" : "rejected");
+            }
+        }
+    }
+}
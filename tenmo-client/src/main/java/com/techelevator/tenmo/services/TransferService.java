@@ -1,25 +1,38 @@
 package com.techelevator.tenmo.services;
 
-import com.techelevator.tenmo.model.Account;
 import com.techelevator.tenmo.model.AuthenticatedUser;
 import com.techelevator.tenmo.model.Transfer;
-import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.model.TransferDetailDto;
+import com.techelevator.tenmo.model.TransferDetailPageDto;
 import com.techelevator.util.BasicLogger;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 
 public class TransferService {
 
     private static final String API_BASE_URL = "http://localhost:8080/";
+    private static final int HISTORY_PAGE_SIZE = 20;
+    // Creating a transfer is retried once on a timeout; the shared Idempotency-Key stops the retry paying twice
+    private static final int CREATE_ATTEMPTS = 2;
     private final String baseUrl;
     private final RestTemplate restTemplate = new RestTemplate();
     private final ConsoleService consoleService = new ConsoleService();
-    private final AccountService accountService = new AccountService(API_BASE_URL);
+    // An account's username never changes, so each is looked up once per session
+    private final Map<Integer, String> knownUsernames = new HashMap<>();
 
 
     public TransferService(String url) {
@@ -27,25 +40,26 @@ public class TransferService {
     }
 
     public void getTransferHistory(AuthenticatedUser currentUser) {
-        Transfer[] transferHistoryArray = null;
         try {
-            ResponseEntity<Transfer[]> response = restTemplate.exchange(baseUrl + "user/{id}/transfer", HttpMethod.GET, makeAuthEntity(currentUser), Transfer[].class, currentUser.getUser().getId());
-            transferHistoryArray = response.getBody();
             System.out.println("-------------------------------------");
             System.out.println("Transfer                             ");
             System.out.println("ID          From/To            Amount");
             System.out.println("-------------------------------------");
-            for (Transfer transfer : transferHistoryArray) {
-                // 1: Request
-                if (transfer.getTransferTypeId() == 1) {
-                    System.out.printf("%d      FROM: %s          $ %s\n", transfer.getTransferId(),
-                            getUserNameByAccountId(currentUser, transfer.getAccountFrom()), transfer.getAmount());
-                    // 2: Send
-                } else if (transfer.getTransferTypeId() == 2) {
-                    System.out.printf("%d      TO: %s            $ %s\n", transfer.getTransferId(),
-                            getUserNameByAccountId(currentUser, transfer.getAccountTo()), transfer.getAmount());
+            // History comes back a page at a time, newest first
+            Integer cursor = null;
+            do {
+                TransferDetailPageDto page = getTransferHistoryPage(currentUser, cursor);
+                for (TransferDetailDto transfer : page.getTransfers()) {
+                    if (transfer.getTransferType().equals("Request")) {
+                        System.out.printf("%d      FROM: %s          $ %s\n", transfer.getTransferId(),
+                                transfer.getUsernameFrom(), transfer.getAmount());
+                    } else if (transfer.getTransferType().equals("Send")) {
+                        System.out.printf("%d      TO: %s            $ %s\n", transfer.getTransferId(),
+                                transfer.getUsernameTo(), transfer.getAmount());
+                    }
                 }
-            }
+                cursor = page.getNextCursor();
+            } while (cursor != null && consoleService.promptForString("Show older transfers? (y/n): ").equalsIgnoreCase("y"));
             System.out.println("-------------------------------------");
             getTransferDetailByTransferId(currentUser);
         } catch (RestClientException e) {
@@ -55,13 +69,24 @@ public class TransferService {
         }
     }
 
+    // Usernames, type and status come back joined in, so a page is one request
+    private TransferDetailPageDto getTransferHistoryPage(AuthenticatedUser currentUser, Integer after) {
+        String url = baseUrl + "user/{id}/transfer/detail?limit=" + HISTORY_PAGE_SIZE;
+        if (after != null) {
+            url += "&after=" + after;
+        }
+        ResponseEntity<TransferDetailPageDto> response = restTemplate.exchange(url, HttpMethod.GET, makeAuthEntity(currentUser),
+                TransferDetailPageDto.class, currentUser.getUser().getId());
+        return response.getBody();
+    }
+
     private void getTransferDetailByTransferId(AuthenticatedUser currentUser) {
         while (true) {
             int transferId = consoleService.promptForInt("Please input transfer ID to view detail (0 to cancel): ");
             if (transferId == 0) {
                 break;
             }
-            Transfer transfer = getTransferByTransferId(currentUser, transferId);
+            TransferDetailDto transfer = getTransferDetail(currentUser, transferId);
             System.out.println("-------------------------------------");
             System.out.println("           Transfer Detail           ");
             System.out.println("-------------------------------------");
@@ -70,43 +95,61 @@ public class TransferService {
                             "TO: %s\n" +
                             "TYPE: %s\n" +
                             "STATUS: %s\n" +
-                            "AMOUNT: %s\n", transfer.getTransferId(), getUserNameByAccountId(currentUser, transfer.getAccountFrom()),
-                    getUserNameByAccountId(currentUser, transfer.getAccountTo()),
-                    getTypeString(transfer), getStatusString(transfer), transfer.getAmount());
+                            "AMOUNT: %s\n", transfer.getTransferId(), transfer.getUsernameFrom(), transfer.getUsernameTo(),
+                    transfer.getTransferType(), transfer.getTransferStatus(), transfer.getAmount());
             System.out.println("-------------------------------------");
         }
     }
 
-    public void getPendingRequests(AuthenticatedUser currentUser) {
-        Transfer[] transferHistoryPendingArray = null;
+    // Returns null if the list could not be fetched
+    public Transfer[] getPendingRequests(AuthenticatedUser currentUser) {
         try {
             ResponseEntity<Transfer[]> response = restTemplate.exchange(baseUrl + "user/{id}/transfer/pending/", HttpMethod.GET,
                     makeAuthEntity(currentUser), Transfer[].class, currentUser.getUser().getId());
-            transferHistoryPendingArray = response.getBody();
-            System.out.println("-------------------------------------");
-            System.out.println("Transfer                             ");
-            System.out.println("ID             To              Amount");
-            System.out.println("-------------------------------------");
-            if (transferHistoryPendingArray.length != 0) {
-                int currentUserAccountId = accountService.getAccountByUserId(currentUser).getAccount_id();
-                for (Transfer transfer : transferHistoryPendingArray) {
-                    if (transfer.getAccountFrom() == currentUserAccountId) {
-                        System.out.printf("%d      TO: %s            $ %s\n", transfer.getTransferId(),
-                                getUserNameByAccountId(currentUser, transfer.getAccountTo()), transfer.getAmount());
-                    }
-                }
-                System.out.println("-------------------------------------");
-            } else {
-                System.out.println("There is no pending request0!");
-                System.out.println("Please hit 0 to cancel");
-            }
+            return response.getBody();
         } catch (RestClientException e) {
             System.out.println("Error retrieving pending transfer record: " + e.getMessage());
-        } catch (NullPointerException e) {
+        }
+        return null;
+    }
+
+    public void printPendingRequests(AuthenticatedUser currentUser, Transfer[] transferHistoryPendingArray) {
+        if (transferHistoryPendingArray == null) {
             System.out.println("No transfer record found!");
+            return;
+        }
+        System.out.println("-------------------------------------");
+        System.out.println("Transfer                             ");
+        System.out.println("ID             To              Amount");
+        System.out.println("-------------------------------------");
+        if (transferHistoryPendingArray.length != 0) {
+            int currentUserAccountId = currentUser.getAccountId();
+            Set<Integer> unknownAccountIds = new HashSet<>();
+            for (Transfer transfer : transferHistoryPendingArray) {
+                if (!knownUsernames.containsKey(transfer.getAccountTo())) {
+                    unknownAccountIds.add(transfer.getAccountTo());
+                }
+            }
+            knownUsernames.putAll(getUsernamesByAccountIds(currentUser, unknownAccountIds));
+            for (Transfer transfer : transferHistoryPendingArray) {
+                if (transfer.getAccountFrom() == currentUserAccountId) {
+                    System.out.printf("%d      TO: %s            $ %s\n", transfer.getTransferId(),
+                            knownUsernames.get(transfer.getAccountTo()), transfer.getAmount());
+                }
+            }
+            System.out.println("-------------------------------------");
+        } else {
+            System.out.println("There is no pending request0!");
+            System.out.println("Please hit 0 to cancel");
         }
     }
 
+    private TransferDetailDto getTransferDetail(AuthenticatedUser currentUser, int transferId) {
+        ResponseEntity<TransferDetailDto> response = restTemplate.exchange(baseUrl + "user/{id}/transfer/{transferId}/detail", HttpMethod.GET,
+                makeAuthEntity(currentUser), TransferDetailDto.class, currentUser.getUser().getId(), transferId);
+        return response.getBody();
+    }
+
     public Transfer getTransferByTransferId(AuthenticatedUser currentUser, int transferId) {
         Transfer transfer = null;
         try {
@@ -120,142 +163,116 @@ public class TransferService {
         return transfer;
     }
 
-    public void postTransfer(int sendOrRequestId, int accountToOrFromId, BigDecimal amount, AuthenticatedUser currentUser, Account currentUserAccount) {
-        HttpEntity<Transfer> entity = null;
-        if (sendOrRequestId == 2) {
-            Transfer sendTransfer = makeSendTransfer(accountToOrFromId, amount, currentUserAccount);
-            entity = makeTransferEntity(sendTransfer, currentUser);
-        } else if (sendOrRequestId == 1) {
-            Transfer requestTransfer = makeRequestTransfer(accountToOrFromId, amount, currentUserAccount);
-            entity = makeTransferEntity(requestTransfer, currentUser);
-        }
-        try {
-            restTemplate.exchange(baseUrl + "user/{id}/transfer", HttpMethod.POST, entity, Transfer.class, currentUser.getUser().getId());
-        } catch (RestClientResponseException e) {
-            BasicLogger.log(e.getRawStatusCode() + " : " + e.getStatusText());
-        } catch (ResourceAccessException e) {
-            BasicLogger.log(e.getMessage());
-        }
+    // The server only takes pending requests here; sends go through sendBucks
+    public void postRequest(int accountFromId, BigDecimal amount, AuthenticatedUser currentUser) {
+        Transfer requestTransfer = makeRequestTransfer(accountFromId, amount, currentUser.getAccountId());
+        postOnce(baseUrl + "user/{id}/transfer", makeTransferEntity(requestTransfer, currentUser), currentUser);
     }
 
-    public boolean approveRequest(int transferId, AuthenticatedUser currentUser) {
-        Transfer transfer = getTransferByTransferId(currentUser, transferId);
-        transfer.setTransferStatusId(2);
-        HttpEntity<Transfer> transferEntity = makeTransferEntity(transfer, currentUser);
-        boolean success = false;
-        if (transfer.getAmount().compareTo(accountService.getBalance(currentUser)) <= 0) {
+    // Single call: the server debits, credits and records the Send transfer in one transaction
+    public Transfer sendBucks(int accountToId, BigDecimal amount, AuthenticatedUser currentUser) {
+        Transfer sendTransfer = new Transfer();
+        sendTransfer.setAccountTo(accountToId);
+        sendTransfer.setAmount(amount);
+        return postOnce(baseUrl + "user/{id}/transfer/send", makeTransferEntity(sendTransfer, currentUser), currentUser);
+    }
+
+    // Every attempt resends the same entity, and with it the same Idempotency-Key, so the transfer is created at most once
+    private Transfer postOnce(String url, HttpEntity<Transfer> entity, AuthenticatedUser currentUser) {
+        for (int attempt = 1; attempt <= CREATE_ATTEMPTS; attempt++) {
             try {
-                restTemplate.exchange(baseUrl + "user/{id}/transfer/{transferId}", HttpMethod.PUT, transferEntity, Transfer.class, currentUser.getUser().getId(), transferId);
-                success = true;
+                ResponseEntity<Transfer> response = restTemplate.exchange(url, HttpMethod.POST, entity, Transfer.class,
+                        currentUser.getUser().getId());
+                return response.getBody();
             } catch (RestClientResponseException e) {
                 BasicLogger.log(e.getRawStatusCode() + " : " + e.getStatusText());
+                return null;
             } catch (ResourceAccessException e) {
                 BasicLogger.log(e.getMessage());
             }
-        } else {
-            System.out.println("Unable to approve the request, not enough TE bucks!");
+        }
+        return null;
+    }
+
+    // The server pays the request and marks it Approved in one transaction; a request that is no longer
+    // pending (already approved or rejected) comes back as 409 and nothing is paid twice
+    public boolean approveRequest(int transferId, AuthenticatedUser currentUser) {
+        boolean success = false;
+        try {
+            restTemplate.exchange(baseUrl + "user/{id}/transfer/{transferId}/approve", HttpMethod.PUT, makeAuthEntity(currentUser),
+                    Transfer.class, currentUser.getUser().getId(), transferId);
+            success = true;
+        } catch (RestClientResponseException e) {
+            if (e.getRawStatusCode() == HttpStatus.BAD_REQUEST.value()) {
+                System.out.println("Unable to approve the request, not enough TE bucks!");
+            }
+            BasicLogger.log(e.getRawStatusCode() + " : " + e.getStatusText());
+        } catch (ResourceAccessException e) {
+            BasicLogger.log(e.getMessage());
         }
         return success;
     }
 
-    public void rejectRequest(AuthenticatedUser currentUser) {
+    public boolean rejectRequest(AuthenticatedUser currentUser) {
         int transferId = consoleService.promptForInt("Please select a transfer ID to reject: ");
-        Transfer transfer = getTransferByTransferId(currentUser, transferId);
-        // Set transfer_status_id = 3 for 'Reject'
-        transfer.setTransferStatusId(3);
-        HttpEntity<Transfer> entity = makeTransferEntity(transfer, currentUser);
-        //boolean success = false;
+        boolean success = false;
         try {
-            restTemplate.exchange(baseUrl + "user/{id}/transfer/{transferId}", HttpMethod.PUT, entity, Transfer.class, currentUser.getUser().getId(), transferId);
-            //success = true;
+            restTemplate.exchange(baseUrl + "user/{id}/transfer/{transferId}/reject", HttpMethod.PUT, makeAuthEntity(currentUser),
+                    Transfer.class, currentUser.getUser().getId(), transferId);
+            success = true;
         } catch (RestClientResponseException e) {
             BasicLogger.log(e.getRawStatusCode() + " : " + e.getStatusText());
         } catch (ResourceAccessException e) {
             BasicLogger.log(e.getMessage());
         }
-        //return success;
+        return success;
     }
 
     //
     // Helper methods
     //
 
-    // For Sending TE Bucks : currentUser = money sender
-    // accountToId : receiver's account ID
-    private Transfer makeSendTransfer(int accountToId, BigDecimal amount, Account currentUserAccount) {
-        Transfer newTransfer = new Transfer();
-        newTransfer.setTransferTypeId(2);
-        newTransfer.setTransferStatusId(2);
-        int accountFrom = currentUserAccount.getAccount_id();
-        newTransfer.setAccountFrom(accountFrom);
-        int accountTo = accountToId;
-        newTransfer.setAccountTo(accountTo);
-        newTransfer.setAmount(amount);
-        return newTransfer;
-    }
-
     // For Requesting TE Bucks : currentUser = money receiver
     // accountFromId : user who got requested for money from the current User
-    private Transfer makeRequestTransfer(int accountFromId, BigDecimal amount, Account currentUserAccount) {
+    private Transfer makeRequestTransfer(int accountFromId, BigDecimal amount, int currentUserAccountId) {
         Transfer newTransfer = new Transfer();
         newTransfer.setTransferTypeId(1);
         newTransfer.setTransferStatusId(1);
         int accountFrom = accountFromId;
         newTransfer.setAccountFrom(accountFrom);
-        int accountTo = currentUserAccount.getAccount_id();
+        int accountTo = currentUserAccountId;
         newTransfer.setAccountTo(accountTo);
         newTransfer.setAmount(amount);
         return newTransfer;
     }
 
-    private String getTypeString(Transfer transfer) {
-        String type = null;
-        if (transfer.getTransferTypeId() == 1) {
-            type = "Request";
-        } else if (transfer.getTransferTypeId() == 2) {
-            type = "Send";
+    // One directory call resolves every account id shown on a screen
+    private Map<Integer, String> getUsernamesByAccountIds(AuthenticatedUser currentUser, Collection<Integer> accountIds) {
+        Map<Integer, String> usernames = new HashMap<>();
+        if (accountIds.isEmpty()) {
+            return usernames;
         }
-        return type;
-    }
-
-    private String getStatusString(Transfer transfer) {
-        String status = null;
-        if (transfer.getTransferStatusId() == 1) {
-            status = "Pending";
-        } else if (transfer.getTransferStatusId() == 2) {
-            status = "Approved";
-        } else if (transfer.getTransferStatusId() == 3) {
-            status = "Rejected";
+        UriComponentsBuilder url = UriComponentsBuilder.fromHttpUrl(baseUrl + "user/directory");
+        for (Integer accountId : accountIds) {
+            url.queryParam("accountId", accountId);
         }
-        return status;
-    }
-
-    private String getUserNameByAccountId(AuthenticatedUser currentUser, int accountId) {
-        String userName = null;
-        int userId = 0;
         try {
-            ResponseEntity<Account[]> responseAccount = restTemplate.exchange(baseUrl + "user/all/account", HttpMethod.GET, makeAuthEntity(currentUser), Account[].class);
-            Account[] accounts = responseAccount.getBody();
-            for (Account account : accounts) {
-                if (account.getAccount_id() == accountId) {
-                    userId = account.getUser_id();
-                }
-            }
-            ResponseEntity<User> responseUser = restTemplate.exchange(baseUrl + "user/userId/{id}", HttpMethod.GET, makeAuthEntity(currentUser), User.class, userId);
-            User user = responseUser.getBody();
-            userName = user.getUsername();
+            ResponseEntity<Map<Integer, String>> response = restTemplate.exchange(url.toUriString(), HttpMethod.GET,
+                    makeAuthEntity(currentUser), new ParameterizedTypeReference<Map<Integer, String>>() { });
+            usernames.putAll(Objects.requireNonNull(response.getBody()));
         } catch (RestClientException e) {
             System.out.println("Error retrieving pending Account/User record: " + e.getMessage());
         } catch (NullPointerException e) {
             System.out.println("No transfer record found!");
         }
-        return userName;
+        return usernames;
     }
 
     private HttpEntity<Transfer> makeTransferEntity(Transfer transfer, AuthenticatedUser currentUser) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setBearerAuth(currentUser.getToken());
+        headers.set("Idempotency-Key", UUID.randomUUID().toString());
         return new HttpEntity<>(transfer, headers);
     }
 
@@ -0,0 +1,151 @@
+package com.techelevator.loadtest;
+
+import com.techelevator.tenmo.model.Account;
+import com.techelevator.tenmo.model.Transfer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the server kept its books straight under load. Balances and the highest transfer id are captured
+ * before the run; afterwards, with the load stopped, the audit fetches every account and streams the transfer
+ * export and reports:
+ * <ul>
+ *   <li>money supply drift: the total of all balances must not change, since transfers only move money;</li>
+ *   <li>negative balances;</li>
+ *   <li>lost updates: each account must end at its starting balance plus the approved transfers into it minus the
+ *   approved transfers out of it since the run began;</li>
+ *   <li>lost acknowledgements: every send and request the server answered with success must be in the ledger with
+ *   the same accounts and amount, and in the state the virtual users left it in.</li>
+ * </ul>
+ * The server must not see other traffic during the run, or the checks will flag it.
+ */
+public class LedgerAudit {
+
+    private static final int STATUS_PENDING = 1;
+    private static final int STATUS_APPROVED = 2;
+
+    private final Map<Integer, BigDecimal> startBalances;
+    private final int startMaxTransferId;
+    private final Map<Integer, Transfer> sends = new ConcurrentHashMap<>();
+    private final Map<Integer, Transfer> requests = new ConcurrentHashMap<>();
+    private final Set<Integer> approvals = ConcurrentHashMap.newKeySet();
+    // approvals that got no clear answer, so the request may or may not have been paid
+    private final Set<Integer> uncertainApprovals = ConcurrentHashMap.newKeySet();
+
+    private LedgerAudit(Map<Integer, BigDecimal> startBalances, int startMaxTransferId) {
+        this.startBalances = startBalances;
+        this.startMaxTransferId = startMaxTransferId;
+    }
+
+    public static LedgerAudit snapshot(TenmoApi api, Session auditor) throws IOException, InterruptedException {
+        Map<Integer, BigDecimal> balances = new HashMap<>();
+        for (Account account : api.getAllAccounts(auditor)) {
+            balances.put(account.getAccount_id(), account.getBalance());
+        }
+        AtomicInteger maxTransferId = new AtomicInteger();
+        api.forEachTransfer(auditor, transfer -> maxTransferId.accumulateAndGet(transfer.getTransferId(), Math::max));
+        return new LedgerAudit(balances, maxTransferId.get());
+    }
+
+    public void recordSend(Transfer transfer) {
+        sends.put(transfer.getTransferId(), transfer);
+    }
+
+    public void recordRequest(Transfer transfer) {
+        requests.put(transfer.getTransferId(), transfer);
+    }
+
+    public void recordApproval(int transferId) {
+        approvals.add(transferId);
+    }
+
+    public void recordUncertainApproval(int transferId) {
+        uncertainApprovals.add(transferId);
+    }
+
+    public BigDecimal getStartSupply() {
+        return startBalances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public List<String> verify(TenmoApi api, Session auditor, StringBuilder summary) throws IOException, InterruptedException {
+        List<String> violations = new ArrayList<>();
+
+        Map<Integer, BigDecimal> endBalances = new HashMap<>();
+        for (Account account : api.getAllAccounts(auditor)) {
+            endBalances.put(account.getAccount_id(), account.getBalance());
+        }
+
+        Map<Integer, BigDecimal> netChanges = new HashMap<>();
+        Map<Integer, Transfer> ledger = new HashMap<>();
+        api.forEachTransfer(auditor, transfer -> {
+            if (transfer.getTransferId() <= startMaxTransferId) {
+                return;
+            }
+            if (sends.containsKey(transfer.getTransferId()) || requests.containsKey(transfer.getTransferId())) {
+                ledger.put(transfer.getTransferId(), transfer);
+            }
+            if (transfer.getTransferStatusId() == STATUS_APPROVED) {
+                netChanges.merge(transfer.getAccountFrom(), transfer.getAmount().negate(), BigDecimal::add);
+                netChanges.merge(transfer.getAccountTo(), transfer.getAmount(), BigDecimal::add);
+            }
+        });
+
+        BigDecimal startSupply = getStartSupply();
+        BigDecimal endSupply = endBalances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        summary.append(String.format("Money supply: %s before, %s after%n", startSupply, endSupply));
+        summary.append(String.format("Acknowledged: %d sends, %d requests, %d approvals (%d uncertain)%n",
+                sends.size(), requests.size(), approvals.size(), uncertainApprovals.size()));
+        if (startSupply.compareTo(endSupply) != 0) {
+            violations.add("Money supply drifted by " + endSupply.subtract(startSupply));
+        }
+
+        for (Map.Entry<Integer, BigDecimal> account : endBalances.entrySet()) {
+            int accountId = account.getKey();
+            BigDecimal startBalance = startBalances.get(accountId);
+            if (startBalance == null) {
+                violations.add("Account " + accountId + " was created during the run");
+                continue;
+            }
+            if (account.getValue().signum() < 0) {
+                violations.add("Account " + accountId + " has a negative balance of " + account.getValue());
+            }
+            BigDecimal expected = startBalance.add(netChanges.getOrDefault(accountId, BigDecimal.ZERO));
+            if (expected.compareTo(account.getValue()) != 0) {
+                violations.add("Account " + accountId + " holds " + account.getValue() + " but its transfers add up to " + expected);
+            }
+        }
+
+        for (Transfer sent : sends.values()) {
+            checkAcknowledged(sent, ledger.get(sent.getTransferId()), STATUS_APPROVED, violations);
+        }
+        for (Transfer requested : requests.values()) {
+            if (uncertainApprovals.contains(requested.getTransferId())) {
+                continue;
+            }
+            int expectedStatus = approvals.contains(requested.getTransferId()) ? STATUS_APPROVED : STATUS_PENDING;
+            checkAcknowledged(requested, ledger.get(requested.getTransferId()), expectedStatus, violations);
+        }
+        return violations;
+    }
+
+    private void checkAcknowledged(Transfer acknowledged, Transfer stored, int expectedStatus, List<String> violations) {
+        if (stored == null) {
+            violations.add("Transfer " + acknowledged.getTransferId() + " was acknowledged but is not in the ledger");
+        } else if (stored.getAccountFrom() != acknowledged.getAccountFrom()
+                || stored.getAccountTo() != acknowledged.getAccountTo()
+                || stored.getAmount().compareTo(acknowledged.getAmount()) != 0) {
+            violations.add("Transfer " + acknowledged.getTransferId() + " was acknowledged as " + acknowledged + " but stored as " + stored);
+        } else if (stored.getTransferStatusId() != expectedStatus) {
+            violations.add("Transfer " + acknowledged.getTransferId() + " should have status " + expectedStatus
+                    + " but has " + stored.getTransferStatusId());
+        }
+    }
+}
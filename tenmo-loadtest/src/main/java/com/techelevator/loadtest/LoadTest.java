@@ -0,0 +1,140 @@
+package com.techelevator.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs in the synthetic users, snapshots the ledger, runs the warmup and the measured load, then prints throughput
+ * and latency percentiles per operation followed by the ledger audit. See LoadTestConfig for the options.
+ */
+public class LoadTest {
+
+    private static final String PASSWORD = "password";
+    private static final int LOGIN_THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromArgs(args);
+        TenmoApi api = new TenmoApi(config.getBaseUrl());
+
+        System.out.printf("Logging in %d users at %s%n", config.getUsers(), config.getBaseUrl());
+        List<Session> sessions = logInUsers(api, config);
+        LedgerAudit audit = LedgerAudit.snapshot(api, sessions.get(0));
+
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+        Map<Integer, Queue<Integer>> inboxes = new ConcurrentHashMap<>();
+        for (Session session : sessions) {
+            inboxes.put(session.getAccountId(), new ConcurrentLinkedQueue<>());
+        }
+
+        List<VirtualUser> virtualUsers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Session session : sessions) {
+            VirtualUser virtualUser = new VirtualUser(api, config, session, sessions, inboxes, stats, audit);
+            Thread thread = new Thread(virtualUser, "user-" + session.getUserId());
+            virtualUsers.add(virtualUser);
+            threads.add(thread);
+            thread.start();
+        }
+
+        System.out.printf("Warming up for %ds%n", config.getWarmup().toSeconds());
+        TimeUnit.MILLISECONDS.sleep(config.getWarmup().toMillis());
+        stats.values().forEach(OperationStats::reset);
+        System.out.printf("Measuring for %ds%n", config.getDuration().toSeconds());
+        long start = System.nanoTime();
+        TimeUnit.MILLISECONDS.sleep(config.getDuration().toMillis());
+        virtualUsers.forEach(VirtualUser::stop);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        stats.values().forEach(OperationStats::finish);
+
+        printReport(stats, elapsedSeconds);
+
+        StringBuilder summary = new StringBuilder();
+        List<String> violations = audit.verify(api, sessions.get(0), summary);
+        System.out.println();
+        System.out.print(summary);
+        if (violations.isEmpty()) {
+            System.out.println("Ledger audit passed");
+        } else {
+            System.out.printf("Ledger audit found %d violations:%n", violations.size());
+            violations.stream().limit(50).forEach(violation -> System.out.println("  " + violation));
+            System.exit(1);
+        }
+    }
+
+    private static List<Session> logInUsers(TenmoApi api, LoadTestConfig config) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(LOGIN_THREADS, config.getUsers()));
+        try {
+            List<Future<Session>> logins = new ArrayList<>();
+            for (int i = 1; i <= config.getUsers(); i++) {
+                String username = config.getUserPrefix() + i;
+                logins.add(executor.submit(() -> logIn(api, username)));
+            }
+            List<Session> sessions = new ArrayList<>();
+            for (Future<Session> login : logins) {
+                sessions.add(login.get());
+            }
+            return Collections.unmodifiableList(sessions);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Registers the user on first use, and waits out 429 and 503 answers as the server asks
+    private static Session logIn(TenmoApi api, String username) throws IOException, InterruptedException {
+        boolean registered = false;
+        while (true) {
+            TenmoApi.Response response = api.login(username, PASSWORD);
+            if (response.isSuccessful()) {
+                return api.readSession(response);
+            }
+            if (response.getStatus() == 429 || response.getStatus() == 503) {
+                TimeUnit.SECONDS.sleep(response.getRetryAfterSeconds());
+            } else if (response.getStatus() == 401 && !registered) {
+                TenmoApi.Response registration = api.register(username, PASSWORD);
+                if (registration.getStatus() == 429 || registration.getStatus() == 503) {
+                    TimeUnit.SECONDS.sleep(registration.getRetryAfterSeconds());
+                } else if (!registration.isSuccessful()) {
+                    throw new IOException("Registering " + username + " returned " + registration.getStatus());
+                } else {
+                    registered = true;
+                }
+            } else {
+                throw new IOException("Logging in " + username + " returned " + response.getStatus());
+            }
+        }
+    }
+
+    private static void printReport(Map<Operation, OperationStats> stats, double elapsedSeconds) {
+        System.out.println();
+        System.out.printf("%-10s %9s %9s %9s %9s %9s %9s %10s %9s %9s %9s %9s%n", "operation", "count", "ok", "rejected",
+                "throttled", "errors", "skipped", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long total = 0;
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            OperationStats operation = entry.getValue();
+            total += operation.getCount();
+            System.out.printf("%-10s %9d %9d %9d %9d %9d %9d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().name().toLowerCase(), operation.getCount(), operation.getSucceeded(),
+                    operation.getRejected(), operation.getThrottled(), operation.getFailed(), operation.getSkipped(),
+                    operation.getCount() / elapsedSeconds, operation.getPercentileMillis(50),
+                    operation.getPercentileMillis(99), operation.getPercentileMillis(99.9), operation.getMaxMillis());
+        }
+        System.out.printf("%-10s %9d %59.1f%n", "total", total, total / elapsedSeconds);
+    }
+}
@@ -0,0 +1,107 @@
+package com.techelevator.loadtest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options, each given as --name=value:
+ * <pre>
+ *   --base-url=http://localhost:8080/    server under test
+ *   --users=20                           synthetic users, one thread each
+ *   --user-prefix=loaduser               users are named prefix1..prefixN with password "password";
+ *                                        missing ones are registered, existing ones reused
+ *   --warmup-seconds=10                  load applied before measuring starts
+ *   --duration-seconds=60                measured load
+ *   --think-time-millis=0                pause between one user's operations
+ *   --max-amount=5.00                    sends and requests are for 0.01 up to this amount
+ *   --mix=balance:40,send:20,request:10,approve:10,history:20
+ *                                        relative weight of each operation
+ * </pre>
+ */
+public class LoadTestConfig {
+
+    private static final String DEFAULT_MIX = "balance:40,send:20,request:10,approve:10,history:20";
+
+    private final String baseUrl;
+    private final int users;
+    private final String userPrefix;
+    private final Duration warmup;
+    private final Duration duration;
+    private final long thinkTimeMillis;
+    private final BigDecimal maxAmount;
+    private final Map<Operation, Integer> mix;
+
+    private LoadTestConfig(Map<String, String> options) {
+        String url = options.getOrDefault("base-url", "http://localhost:8080/");
+        baseUrl = url.endsWith("/") ? url : url + "/";
+        users = Integer.parseInt(options.getOrDefault("users", "20"));
+        userPrefix = options.getOrDefault("user-prefix", "loaduser");
+        warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup-seconds", "10")));
+        duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration-seconds", "60")));
+        thinkTimeMillis = Long.parseLong(options.getOrDefault("think-time-millis", "0"));
+        maxAmount = new BigDecimal(options.getOrDefault("max-amount", "5.00"));
+        mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        if (users < 2) {
+            throw new IllegalArgumentException("--users must be at least 2 so there is someone to pay");
+        }
+    }
+
+    public static LoadTestConfig fromArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return new LoadTestConfig(options);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in --mix but got " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public String getUserPrefix() {
+        return userPrefix;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public long getThinkTimeMillis() {
+        return thinkTimeMillis;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+}
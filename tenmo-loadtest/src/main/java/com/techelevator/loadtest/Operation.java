@@ -0,0 +1,17 @@
+package com.techelevator.loadtest;
+
+/**
+ * The user actions the load is made of, each matching a tenmo-client menu option.
+ */
+public enum Operation {
+    // GET user/{id}/account
+    BALANCE,
+    // POST user/{id}/transfer/send
+    SEND,
+    // POST user/{id}/transfer, a Request for money from another user
+    REQUEST,
+    // PUT user/{id}/transfer/{transferId}/approve on a request made to this user
+    APPROVE,
+    // GET user/{id}/transfer/detail, the first page of history
+    HISTORY
+}
@@ -0,0 +1,93 @@
+package com.techelevator.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counts for one operation, shared by every virtual user. Latencies go into an HdrHistogram
+ * Recorder in microseconds, so percentiles up to p999 stay accurate without keeping every sample.
+ */
+public class OperationStats {
+
+    private final Recorder latencies = new Recorder(3);
+    private final LongAdder succeeded = new LongAdder();
+    // 400 and 409: the server refused on a business rule, e.g. insufficient funds or an already approved request
+    private final LongAdder rejected = new LongAdder();
+    // 429 and 503: rate limiting and load shedding
+    private final LongAdder throttled = new LongAdder();
+    // any other status, or no response at all
+    private final LongAdder failed = new LongAdder();
+    // the operation had nothing to act on, e.g. no request waiting to be approved, so no call was made
+    private final LongAdder skipped = new LongAdder();
+    private Histogram histogram;
+
+    public void record(long elapsedNanos, int status) {
+        latencies.recordValue(Math.max(1, elapsedNanos / 1000));
+        if (status >= 200 && status < 300) {
+            succeeded.increment();
+        } else if (status == 400 || status == 409) {
+            rejected.increment();
+        } else if (status == 429 || status == 503) {
+            throttled.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    public void recordFailure(long elapsedNanos) {
+        record(elapsedNanos, -1);
+    }
+
+    public void recordSkipped() {
+        skipped.increment();
+    }
+
+    // Drops everything recorded so far; called when the warmup ends
+    public void reset() {
+        latencies.reset();
+        succeeded.reset();
+        rejected.reset();
+        throttled.reset();
+        failed.reset();
+        skipped.reset();
+    }
+
+    // Freezes the histogram for reporting; call once after the virtual users have stopped
+    public void finish() {
+        histogram = latencies.getIntervalHistogram();
+    }
+
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    public double getPercentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public double getMaxMillis() {
+        return histogram.getMaxValue() / 1000.0;
+    }
+
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+}
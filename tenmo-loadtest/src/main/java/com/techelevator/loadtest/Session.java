@@ -0,0 +1,29 @@
+package com.techelevator.loadtest;
+
+/**
+ * A logged-in synthetic user: the access token and the ids the server put in it.
+ */
+public class Session {
+
+    private final String token;
+    private final int userId;
+    private final int accountId;
+
+    public Session(String token, int userId, int accountId) {
+        this.token = token;
+        this.userId = userId;
+        this.accountId = accountId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+}
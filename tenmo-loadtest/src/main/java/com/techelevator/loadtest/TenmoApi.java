@@ -0,0 +1,180 @@
+package com.techelevator.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techelevator.tenmo.model.Account;
+import com.techelevator.tenmo.model.LoginDto;
+import com.techelevator.tenmo.model.Transfer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The server endpoints tenmo-client calls, over one shared java.net.http client. Calls return the raw status and
+ * body so the caller decides what counts as a failure; only transport errors throw.
+ */
+public class TenmoApi {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public TenmoApi(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static class Response {
+        private final int status;
+        private final String body;
+        private final long retryAfterSeconds;
+
+        Response(HttpResponse<String> response) {
+            this.status = response.statusCode();
+            this.body = response.body();
+            this.retryAfterSeconds = response.headers().firstValueAsLong("Retry-After").orElse(1);
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public Response register(String username, String password) throws IOException, InterruptedException {
+        return send(post("register", null, credentials(username, password), null));
+    }
+
+    public Response login(String username, String password) throws IOException, InterruptedException {
+        return send(post("login", null, credentials(username, password), null));
+    }
+
+    public Response getBalance(Session session) throws IOException, InterruptedException {
+        return send(get("user/" + session.getUserId() + "/account", session));
+    }
+
+    public Response sendBucks(Session session, int accountTo, BigDecimal amount) throws IOException, InterruptedException {
+        Transfer transfer = new Transfer();
+        transfer.setAccountTo(accountTo);
+        transfer.setAmount(amount);
+        return send(post("user/" + session.getUserId() + "/transfer/send", session, transfer, UUID.randomUUID().toString()));
+    }
+
+    // Mirrors TransferService.postTransfer for a Request: the other user's account pays this user's account
+    public Response requestBucks(Session session, int accountFrom, BigDecimal amount) throws IOException, InterruptedException {
+        Transfer transfer = new Transfer();
+        transfer.setTransferTypeId(1);
+        transfer.setTransferStatusId(1);
+        transfer.setAccountFrom(accountFrom);
+        transfer.setAccountTo(session.getAccountId());
+        transfer.setAmount(amount);
+        return send(post("user/" + session.getUserId() + "/transfer", session, transfer, UUID.randomUUID().toString()));
+    }
+
+    public Response approve(Session session, int transferId) throws IOException, InterruptedException {
+        return send(authorized("user/" + session.getUserId() + "/transfer/" + transferId + "/approve", session)
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build());
+    }
+
+    public Response getHistoryPage(Session session, int limit) throws IOException, InterruptedException {
+        return send(get("user/" + session.getUserId() + "/transfer/detail?limit=" + limit, session));
+    }
+
+    public List<Account> getAllAccounts(Session session) throws IOException, InterruptedException {
+        Response response = send(get("user/all/account", session));
+        requireSuccess(response, "user/all/account");
+        return List.of(objectMapper.readValue(response.getBody(), Account[].class));
+    }
+
+    // Streams the whole transfer table from the NDJSON export rather than holding the JSON array in memory
+    public void forEachTransfer(Session session, Consumer<Transfer> consumer) throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> response = httpClient.send(get("user/all/transfer/export", session),
+                HttpResponse.BodyHandlers.ofLines());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("user/all/transfer/export returned " + response.statusCode());
+        }
+        try (Stream<String> lines = response.body()) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (!line.isEmpty()) {
+                    consumer.accept(objectMapper.readValue(line, Transfer.class));
+                }
+            }
+        }
+    }
+
+    public Transfer readTransfer(Response response) throws JsonProcessingException {
+        return objectMapper.readValue(response.getBody(), Transfer.class);
+    }
+
+    public Session readSession(Response response) throws JsonProcessingException {
+        JsonNode login = objectMapper.readTree(response.getBody());
+        return new Session(login.get("token").asText(), login.get("user").get("id").asInt(), login.get("accountId").asInt());
+    }
+
+    private void requireSuccess(Response response, String path) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException(path + " returned " + response.getStatus());
+        }
+    }
+
+    private LoginDto credentials(String username, String password) {
+        LoginDto credentials = new LoginDto();
+        credentials.setUsername(username);
+        credentials.setPassword(password);
+        return credentials;
+    }
+
+    private HttpRequest get(String path, Session session) {
+        return authorized(path, session).GET().build();
+    }
+
+    private HttpRequest post(String path, Session session, Object body, String idempotencyKey) throws JsonProcessingException {
+        HttpRequest.Builder request = authorized(path, session)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (idempotencyKey != null) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        return request.build();
+    }
+
+    private HttpRequest.Builder authorized(String path, Session session) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+        if (session != null) {
+            request.header("Authorization", "Bearer " + session.getToken());
+        }
+        return request;
+    }
+
+    private Response send(HttpRequest request) throws IOException, InterruptedException {
+        return new Response(httpClient.send(request, HttpResponse.BodyHandlers.ofString()));
+    }
+}
@@ -0,0 +1,142 @@
+package com.techelevator.loadtest;
+
+import com.techelevator.tenmo.model.Transfer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One synthetic user running a closed loop: pick an operation by weight, call the server, wait for the answer, pause
+ * for the think time, repeat until stopped. Requests are addressed to random other users and land in the payer's
+ * inbox, which is where that payer's approvals come from.
+ */
+public class VirtualUser implements Runnable {
+
+    private static final int HISTORY_PAGE_SIZE = 10;
+
+    private final TenmoApi api;
+    private final LoadTestConfig config;
+    private final Session session;
+    private final List<Session> everyone;
+    private final Map<Integer, Queue<Integer>> inboxes;
+    private final Map<Operation, OperationStats> stats;
+    private final LedgerAudit audit;
+    private final Operation[] weightedOperations;
+    private volatile boolean running = true;
+
+    public VirtualUser(TenmoApi api, LoadTestConfig config, Session session, List<Session> everyone,
+                       Map<Integer, Queue<Integer>> inboxes, Map<Operation, OperationStats> stats, LedgerAudit audit) {
+        this.api = api;
+        this.config = config;
+        this.session = session;
+        this.everyone = everyone;
+        this.inboxes = inboxes;
+        this.stats = stats;
+        this.audit = audit;
+        this.weightedOperations = config.getMix().entrySet().stream()
+                .flatMap(weight -> Collections.nCopies(weight.getValue(), weight.getKey()).stream())
+                .toArray(Operation[]::new);
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            while (running) {
+                long backoffSeconds = perform(weightedOperations[random.nextInt(weightedOperations.length)], random);
+                if (backoffSeconds > 0) {
+                    TimeUnit.SECONDS.sleep(backoffSeconds);
+                } else if (config.getThinkTimeMillis() > 0) {
+                    TimeUnit.MILLISECONDS.sleep(config.getThinkTimeMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns how long to back off when the server asked for it with Retry-After, otherwise 0
+    private long perform(Operation operation, ThreadLocalRandom random) throws InterruptedException {
+        OperationStats operationStats = stats.get(operation);
+        Integer approving = null;
+        if (operation == Operation.APPROVE) {
+            approving = inboxes.get(session.getAccountId()).poll();
+            if (approving == null) {
+                operationStats.recordSkipped();
+                return 0;
+            }
+        }
+
+        Session other = pickOther(random);
+        BigDecimal amount = BigDecimal.valueOf(random.nextLong(1, config.getMaxAmount().movePointRight(2).longValue() + 1))
+                .movePointLeft(2).setScale(2, RoundingMode.UNNECESSARY);
+        long start = System.nanoTime();
+        try {
+            TenmoApi.Response response;
+            switch (operation) {
+                case BALANCE:
+                    response = api.getBalance(session);
+                    break;
+                case SEND:
+                    response = api.sendBucks(session, other.getAccountId(), amount);
+                    break;
+                case REQUEST:
+                    response = api.requestBucks(session, other.getAccountId(), amount);
+                    break;
+                case APPROVE:
+                    response = api.approve(session, approving);
+                    break;
+                default:
+                    response = api.getHistoryPage(session, HISTORY_PAGE_SIZE);
+                    break;
+            }
+            operationStats.record(System.nanoTime() - start, response.getStatus());
+            acknowledge(operation, response, approving);
+            if (response.getStatus() == 429 || response.getStatus() == 503) {
+                return response.getRetryAfterSeconds();
+            }
+        } catch (IOException e) {
+            operationStats.recordFailure(System.nanoTime() - start);
+            if (approving != null) {
+                audit.recordUncertainApproval(approving);
+            }
+        }
+        return 0;
+    }
+
+    private void acknowledge(Operation operation, TenmoApi.Response response, Integer approving) throws IOException {
+        if (operation == Operation.APPROVE && response.isSuccessful()) {
+            audit.recordApproval(approving);
+        } else if (operation == Operation.APPROVE && (response.getStatus() == 429 || response.getStatus() == 503)) {
+            // Shed before it ran, so the request is still pending and can be approved later
+            inboxes.get(session.getAccountId()).add(approving);
+        } else if (operation == Operation.APPROVE && response.getStatus() >= 500) {
+            audit.recordUncertainApproval(approving);
+        } else if (operation == Operation.SEND && response.isSuccessful()) {
+            audit.recordSend(api.readTransfer(response));
+        } else if (operation == Operation.REQUEST && response.isSuccessful()) {
+            Transfer request = api.readTransfer(response);
+            audit.recordRequest(request);
+            inboxes.get(request.getAccountFrom()).add(request.getTransferId());
+        }
+    }
+
+    private Session pickOther(ThreadLocalRandom random) {
+        Session other;
+        do {
+            other = everyone.get(random.nextInt(everyone.size()));
+        } while (other.getUserId() == session.getUserId());
+        return other;
+    }
+}
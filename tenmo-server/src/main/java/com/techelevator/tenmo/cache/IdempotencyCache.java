@@ -0,0 +1,41 @@
+package com.techelevator.tenmo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.techelevator.tenmo.model.Transfer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Remembers the transfer created for each (user, Idempotency-Key) pair so that a retried request is answered without
+ * touching the database. Entries expire after a fixed time and the oldest are dropped past the size limit; anything
+ * evicted is still caught by the unique constraint on transfer.idempotency_key.
+ */
+@Component
+public class IdempotencyCache {
+
+    private final Cache<String, Transfer> transfersByKey;
+
+    public IdempotencyCache(
+            @Value("${idempotency.cache.maximum-size}") long maximumSize,
+            @Value("${idempotency.cache.ttl-seconds}") long ttlSeconds) {
+        this.transfersByKey = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public Transfer get(int userId, String idempotencyKey) {
+        return transfersByKey.getIfPresent(cacheKey(userId, idempotencyKey));
+    }
+
+    public void put(int userId, String idempotencyKey, Transfer transfer) {
+        transfersByKey.put(cacheKey(userId, idempotencyKey), transfer);
+    }
+
+    private String cacheKey(int userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+}
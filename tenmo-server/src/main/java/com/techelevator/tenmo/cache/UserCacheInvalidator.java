@@ -0,0 +1,51 @@
+package com.techelevator.tenmo.cache;
+
+import com.techelevator.tenmo.dao.JdbcUserDao;
+import com.techelevator.tenmo.notification.ChangeBusResyncEvent;
+import com.techelevator.tenmo.notification.UserChangedEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps the user lookup caches in step with writes made on any node: a changed user is evicted once the write commits,
+ * and both caches are cleared when the change bus may have missed changes.
+ */
+@Component
+public class UserCacheInvalidator {
+
+    private final CacheManager cacheManager;
+
+    public UserCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evict(JdbcUserDao.USERS_BY_ID_CACHE, event.getUserId());
+        // Same key getUserByUsername caches under
+        evict(JdbcUserDao.USERS_BY_USERNAME_CACHE, event.getUsername().trim().toLowerCase());
+    }
+
+    @EventListener
+    public void onResync(ChangeBusResyncEvent event) {
+        clear(JdbcUserDao.USERS_BY_ID_CACHE);
+        clear(JdbcUserDao.USERS_BY_USERNAME_CACHE);
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
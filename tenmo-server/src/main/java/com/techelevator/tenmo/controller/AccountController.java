@@ -3,8 +3,10 @@ package com.techelevator.tenmo.controller;
 import com.techelevator.tenmo.dao.AccountDao;
 import com.techelevator.tenmo.exception.AccountExceptions;
 import com.techelevator.tenmo.model.Account;
+import com.techelevator.tenmo.security.TenmoPrincipal;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -33,7 +35,8 @@ public class AccountController {
     }
 
     @RequestMapping(path = "/{id}/account", method = RequestMethod.GET)
-    public Account get(@PathVariable int id) {
+    public Account get(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id) {
+        CallerChecks.requireCaller(principal, id);
         try {
             return accountDao.getAccountByUserId(id);
         } catch (AccountExceptions.AccountNotFoundException e) {
@@ -44,23 +47,13 @@ public class AccountController {
     // Get one account by account id
     @RequestMapping(path = "/{id}/account/{accountId}", method = RequestMethod.GET)
     @PreAuthorize("hasRole('USER')")
-    public Account getAccountByAccountId(@PathVariable int id, @PathVariable int accountId) {
+    public Account getAccountByAccountId(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @PathVariable int accountId) {
+        CallerChecks.requireCaller(principal, id);
+        CallerChecks.requireAccount(principal, accountId);
         try {
             return accountDao.getAccountObjByAccountId(id, accountId);
         } catch(AccountExceptions.AccountNotFoundException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
         }
     }
-
-    // Update balance
-    @RequestMapping(path = "/{id}/account/{accountId}", method = RequestMethod.PUT)
-    @PreAuthorize("hasRole('USER')")
-    public Account updateAccountAddBalance(@PathVariable int id, @PathVariable int accountId, @RequestBody Account account) {
-        account.setAccount_id(accountId);
-        try {
-            return accountDao.updateAccountBalance(id, accountId, account);
-        } catch(AccountExceptions.AccountUpdateException e) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-        }
-    }
-}
\ No newline at end of file
+}
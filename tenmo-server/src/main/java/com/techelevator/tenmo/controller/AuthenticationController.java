@@ -2,13 +2,22 @@ package com.techelevator.tenmo.controller;
 
 import javax.validation.Valid;
 
+import com.techelevator.tenmo.dao.AccountDao;
+import com.techelevator.tenmo.exception.AccountExceptions;
 import com.techelevator.tenmo.exception.DaoException;
+import com.techelevator.tenmo.exception.UserExceptions;
 import com.techelevator.tenmo.model.LoginResponseDto;
+import com.techelevator.tenmo.model.RefreshTokenDto;
+import com.techelevator.tenmo.security.TenmoPrincipal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -31,11 +40,16 @@ public class AuthenticationController {
     private final TokenProvider tokenProvider;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private final UserDao userDao;
+    private final AccountDao accountDao;
+    private final long passwordHashingRetryAfterSeconds;
 
-    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao) {
+    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao,
+                                    AccountDao accountDao, @Value("${password-hashing.retry-after-seconds}") long passwordHashingRetryAfterSeconds) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userDao = userDao;
+        this.accountDao = accountDao;
+        this.passwordHashingRetryAfterSeconds = passwordHashingRetryAfterSeconds;
     }
 
     @RequestMapping(path = "/login", method = RequestMethod.POST)
@@ -46,16 +60,44 @@ public class AuthenticationController {
 
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.createToken(authentication, false);
 
         User user;
+        int accountId;
         try {
             user = userDao.getUserByUsername(loginDto.getUsername());
-        } catch (DaoException e) {
+            accountId = accountDao.getAccountByUserId(user.getId()).getAccount_id();
+        } catch (DaoException | AccountExceptions.AccountNotFoundException e) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Username or password is incorrect.");
         }
+        // The ids travel in the token so later requests need no identity lookups
+        String jwt = tokenProvider.createToken(authentication, user.getId(), accountId, false);
+        String refreshToken = tokenProvider.createRefreshToken(authentication, user.getId(), accountId);
 
-        return new LoginResponseDto(jwt, user);
+        return new LoginResponseDto(jwt, refreshToken, tokenProvider.getTokenValidityInSeconds(), user, accountId);
+    }
+
+    // Trade a refresh token for a new access token without checking the password again
+    @RequestMapping(path = "/refresh", method = RequestMethod.POST)
+    public LoginResponseDto refresh(@Valid @RequestBody RefreshTokenDto refreshTokenDto) {
+        Authentication authentication = tokenProvider.resolveRefreshAuthentication(refreshTokenDto.getRefreshToken());
+        if (authentication == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token is invalid or expired.");
+        }
+        TenmoPrincipal principal = (TenmoPrincipal) authentication.getPrincipal();
+
+        User user;
+        try {
+            user = userDao.getUserById(principal.getUserId());
+        } catch (DaoException e) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token is invalid or expired.");
+        }
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token is invalid or expired.");
+        }
+        String jwt = tokenProvider.createToken(authentication, principal.getUserId(), principal.getAccountId(), false);
+
+        return new LoginResponseDto(jwt, refreshTokenDto.getRefreshToken(), tokenProvider.getTokenValidityInSeconds(), user,
+                principal.getAccountId());
     }
 
     @ResponseStatus(HttpStatus.CREATED)
@@ -73,5 +115,11 @@ public class AuthenticationController {
         }
     }
 
+    // Login and register hash passwords on a bounded pool; when it is full the client is told to back off
+    @ExceptionHandler(UserExceptions.PasswordHashingBusyException.class)
+    public ResponseEntity<String> handlePasswordHashingBusy(UserExceptions.PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingRetryAfterSeconds))
+                .body(e.getMessage());
+    }
 }
-
@@ -0,0 +1,27 @@
+package com.techelevator.tenmo.controller;
+
+import com.techelevator.tenmo.security.TenmoPrincipal;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Endpoints under /user/{id} read or change one user's data, and only that user's own token may reach it. Ids come
+ * from the token, so checking them costs no lookup.
+ */
+final class CallerChecks {
+
+    private CallerChecks() {
+    }
+
+    static void requireCaller(TenmoPrincipal principal, int userId) {
+        if (principal == null || principal.getUserId() != userId) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot act on another user's account");
+        }
+    }
+
+    static void requireAccount(TenmoPrincipal principal, int accountId) {
+        if (principal == null || principal.getAccountId() != accountId) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Account ID " + accountId + " is not yours");
+        }
+    }
+}
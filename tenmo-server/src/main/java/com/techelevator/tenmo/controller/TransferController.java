@@ -1,26 +1,62 @@
 package com.techelevator.tenmo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.techelevator.tenmo.cache.IdempotencyCache;
 import com.techelevator.tenmo.dao.TransferDao;
+import com.techelevator.tenmo.exception.AccountExceptions;
 import com.techelevator.tenmo.exception.DaoException;
 import com.techelevator.tenmo.exception.TransferExceptions;
 import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.model.TransferBatchResultDto;
+import com.techelevator.tenmo.model.TransferDetailDto;
+import com.techelevator.tenmo.model.TransferDetailPageDto;
+import com.techelevator.tenmo.model.TransferPageDto;
+import com.techelevator.tenmo.notification.TransferEventBroadcaster;
+import com.techelevator.tenmo.security.TenmoPrincipal;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/user")
 @PreAuthorize("isAuthenticated()")
 public class TransferController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+    private static final int TRANSFER_TYPE_REQUEST = 1;
+    private static final int TRANSFER_STATUS_PENDING = 1;
+
     private final TransferDao transferDao;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyCache idempotencyCache;
+    private final TransferEventBroadcaster transferEventBroadcaster;
 
-    public TransferController(TransferDao transferDao) {
+    public TransferController(TransferDao transferDao, ObjectMapper objectMapper, IdempotencyCache idempotencyCache,
+                              TransferEventBroadcaster transferEventBroadcaster) {
         this.transferDao = transferDao;
+        this.objectMapper = objectMapper;
+        this.idempotencyCache = idempotencyCache;
+        this.transferEventBroadcaster = transferEventBroadcaster;
     }
 
     // Get the entire transfer history
@@ -33,22 +69,68 @@ public class TransferController {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
         }
     }
-    // Get the transfer history of the current user
-    @RequestMapping(path = "/{id}/transfer", method = RequestMethod.GET)
+    // Export the entire transfer table as NDJSON (default) or CSV, written row by row as it is read
+    @RequestMapping(path = "/all/transfer/export", method = RequestMethod.GET)
     @PreAuthorize("hasRole('USER')")
-    public List<Transfer> getTransferHistory(@PathVariable int id) {
+    public void exportAllTransfers(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        boolean csv = format.equalsIgnoreCase("csv");
+        if (!csv && !format.equalsIgnoreCase("ndjson")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
         try {
-            return transferDao.getTransferHistoryByUserId(id);
-        } catch (TransferExceptions.TransferNotFoundException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+            if (csv) {
+                writer.write("transfer_id,transfer_type_id,transfer_status_id,account_from,account_to,amount\n");
+                transferDao.streamAllTransfers(transfer -> writeCsvRow(writer, transfer));
+            } else {
+                SequenceWriter rows = objectMapper.writerFor(Transfer.class).withRootValueSeparator("\n").writeValues(writer);
+                AtomicBoolean wroteRow = new AtomicBoolean();
+                transferDao.streamAllTransfers(transfer -> {
+                    writeJsonRow(rows, transfer);
+                    wroteRow.set(true);
+                });
+                rows.flush();
+                // The separator only goes between rows, so the last one is terminated here; an empty export stays empty
+                if (wroteRow.get()) {
+                    writer.write("\n");
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        writer.flush();
+    }
+
+    // Get one page of the transfer history of the current user, newest first
+    @RequestMapping(path = "/{id}/transfer", method = RequestMethod.GET)
+    @PreAuthorize("hasRole('USER')")
+    public TransferPageDto getTransferHistory(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id,
+                                              @RequestParam(required = false) Integer after,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        CallerChecks.requireCaller(principal, id);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return transferDao.getTransferHistoryPageByUserId(id, after, pageSize);
+    }
 
+    // Same page as above with type, status and both usernames filled in, ready to display
+    @RequestMapping(path = "/{id}/transfer/detail", method = RequestMethod.GET)
+    @PreAuthorize("hasRole('USER')")
+    public TransferDetailPageDto getTransferDetailHistory(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id,
+                                                          @RequestParam(required = false) Integer after,
+                                                          @RequestParam(defaultValue = "50") int limit) {
+        CallerChecks.requireCaller(principal, id);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return transferDao.getTransferDetailPageByUserId(id, after, pageSize);
     }
 
     // Get the pending transfer history of the current user
     @RequestMapping(path = "/{id}/transfer/pending", method = RequestMethod.GET)
     @PreAuthorize("hasRole('USER')")
-    public List<Transfer> getPendingRequests(@PathVariable int id) {
+    public List<Transfer> getPendingRequests(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id) {
+        CallerChecks.requireCaller(principal, id);
         try {
             return transferDao.getTransferHistoryInPendingByUserId(id);
         } catch (TransferExceptions.TransferNotFoundException e) {
@@ -56,10 +138,23 @@ public class TransferController {
         }
     }
 
+    // Stream "created" and "updated" transfer events for the caller's account as Server-Sent Events, instead of polling pending
+    @RequestMapping(path = "/{id}/transfer/events", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public SseEmitter streamTransferEvents(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id) {
+        CallerChecks.requireCaller(principal, id);
+        try {
+            return transferEventBroadcaster.subscribe(principal.getAccountId());
+        } catch (TransferExceptions.EventStreamLimitException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), e);
+        }
+    }
+
     // Get the transfer with specific transfer id
     @RequestMapping(path = "/{id}/transfer/{transferId}", method = RequestMethod.GET)
     @PreAuthorize("hasRole('USER')")
-    public Transfer getTransfer(@PathVariable int id, @PathVariable int transferId) {
+    public Transfer getTransfer(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @PathVariable int transferId) {
+        CallerChecks.requireCaller(principal, id);
         try {
             return transferDao.getTransferByTransferId(id, transferId);
         } catch (TransferExceptions.TransferNotFoundException e) {
@@ -67,27 +162,139 @@ public class TransferController {
         }
     }
 
-    // Update the transfer with specific transfer id and update Pending to Approved/Rejected
-    @RequestMapping(path = "/{id}/transfer/{transferId}", method = RequestMethod.PUT)
+    // Get one transfer with type, status and both usernames filled in
+    @RequestMapping(path = "/{id}/transfer/{transferId}/detail", method = RequestMethod.GET)
+    @PreAuthorize("hasRole('USER')")
+    public TransferDetailDto getTransferDetail(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @PathVariable int transferId) {
+        CallerChecks.requireCaller(principal, id);
+        try {
+            return transferDao.getTransferDetailByTransferId(id, transferId);
+        } catch (TransferExceptions.TransferNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+    }
+
+    // Approve a pending request: pay it and mark it Approved in one transaction
+    @RequestMapping(path = "/{id}/transfer/{transferId}/approve", method = RequestMethod.PUT)
     @PreAuthorize("hasRole('USER')")
-    public Transfer updateTransferStatus(@PathVariable int id, @PathVariable int transferId, @RequestBody Transfer transfer) {
-        transfer.setTransferId(transferId);
+    public Transfer approveTransfer(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @PathVariable int transferId) {
+        CallerChecks.requireCaller(principal, id);
         try {
-            return transferDao.updateTransfer(id, transferId, transfer);
+            return transferDao.approveTransfer(id, transferId);
         } catch (TransferExceptions.TransferUpdateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        } catch (AccountExceptions.InsufficientFundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (AccountExceptions.AccountNotFoundException e) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
         }
     }
 
-    // Post new transfer for Send transfer
+    // Reject a pending request, no balances change
+    @RequestMapping(path = "/{id}/transfer/{transferId}/reject", method = RequestMethod.PUT)
+    @PreAuthorize("hasRole('USER')")
+    public Transfer rejectTransfer(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @PathVariable int transferId) {
+        CallerChecks.requireCaller(principal, id);
+        try {
+            return transferDao.rejectTransfer(id, transferId);
+        } catch (TransferExceptions.TransferUpdateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    // Post a new request for money: the caller's account receives, and nothing moves until the payer approves.
+    // Sends go through /send, which moves the money with the record.
     @ResponseStatus(HttpStatus.CREATED)
     @RequestMapping(path = "/{id}/transfer", method = RequestMethod.POST)
     @PreAuthorize("hasRole('USER')")
-    public Transfer postNewTransfer(@PathVariable int id, @RequestBody Transfer transfer) {
+    public Transfer postNewTransfer(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @RequestBody Transfer transfer,
+                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        CallerChecks.requireCaller(principal, id);
+        CallerChecks.requireAccount(principal, transfer.getAccountTo());
+        if (transfer.getTransferTypeId() != TRANSFER_TYPE_REQUEST || transfer.getTransferStatusId() != TRANSFER_STATUS_PENDING) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only pending requests can be created here");
+        }
         try {
-            return transferDao.createTransfer(id, transfer);
+            return createOnce(id, idempotencyKey, () -> transferDao.createTransfer(id, transfer, idempotencyKey));
         } catch (TransferExceptions.TransferCreationException e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage(), e);
         }
     }
+
+    // Send money: debit, credit and record the Send transfer in one transaction
+    @ResponseStatus(HttpStatus.CREATED)
+    @RequestMapping(path = "/{id}/transfer/send", method = RequestMethod.POST)
+    @PreAuthorize("hasRole('USER')")
+    public Transfer sendTransfer(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id, @RequestBody Transfer transfer,
+                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        CallerChecks.requireCaller(principal, id);
+        try {
+            return createOnce(id, idempotencyKey, () -> transferDao.sendTransfer(id, principal.getAccountId(), transfer, idempotencyKey));
+        } catch (AccountExceptions.AccountNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        } catch (AccountExceptions.InsufficientFundsException | TransferExceptions.TransferCreationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // Send money to many accounts at once: all items are validated together and saved in one transaction, or none are.
+    // A retry with the same Idempotency-Key gets the saved batch back and pays no one twice
+    @RequestMapping(path = "/{id}/transfer/batch", method = RequestMethod.POST)
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<TransferBatchResultDto> sendTransferBatch(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id,
+                                                                    @RequestBody List<Transfer> transfers,
+                                                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        CallerChecks.requireCaller(principal, id);
+        if (transfers == null || transfers.isEmpty() || transfers.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch must contain between 1 and " + MAX_BATCH_SIZE + " transfers");
+        }
+        if (idempotencyKey != null) {
+            checkIdempotencyKey(idempotencyKey);
+        }
+        try {
+            TransferBatchResultDto result = transferDao.sendTransferBatch(id, principal.getAccountId(), transfers, idempotencyKey);
+            return ResponseEntity.status(result.isCommitted() ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST).body(result);
+        } catch (AccountExceptions.AccountNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        } catch (TransferExceptions.TransferCreationException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // A retry carrying an Idempotency-Key already seen for this user gets the original transfer back without a write
+    private Transfer createOnce(int userId, String idempotencyKey, Supplier<Transfer> create) {
+        if (idempotencyKey == null) {
+            return create.get();
+        }
+        checkIdempotencyKey(idempotencyKey);
+        Transfer transfer = idempotencyCache.get(userId, idempotencyKey);
+        if (transfer == null) {
+            transfer = create.get();
+            idempotencyCache.put(userId, idempotencyKey, transfer);
+        }
+        return transfer;
+    }
+
+    private void checkIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, IDEMPOTENCY_KEY_HEADER + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+    }
+
+    private void writeCsvRow(Writer writer, Transfer transfer) {
+        try {
+            writer.write(transfer.getTransferId() + "," + transfer.getTransferTypeId() + "," + transfer.getTransferStatusId() + "," +
+                    transfer.getAccountFrom() + "," + transfer.getAccountTo() + "," + transfer.getAmount().toPlainString() + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeJsonRow(SequenceWriter rows, Transfer transfer) {
+        try {
+            rows.write(transfer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -1,20 +1,29 @@
 package com.techelevator.tenmo.controller;
 
 import com.techelevator.tenmo.dao.UserDao;
+import com.techelevator.tenmo.model.PayeeDto;
 import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.security.TenmoPrincipal;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/user")
 @PreAuthorize("isAuthenticated()")
 public class UserController {
 
+    private static final int MAX_DIRECTORY_LOOKUP = 1000;
     private final UserDao userDao;
 
     public UserController(UserDao userDao) {
@@ -29,13 +38,34 @@ public class UserController {
 
     @RequestMapping(path = "/userId/{id}", method = RequestMethod.GET)
     @PreAuthorize("hasRole('USER')")
-    public User getUserById(@PathVariable int id) {
+    public User getUserById(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable int id) {
+        CallerChecks.requireCaller(principal, id);
         return userDao.getUserById(id);
     }
 
     @RequestMapping(path = "/username/{username}", method = RequestMethod.GET)
     @PreAuthorize("hasRole('USER')")
-    public User getUserByUsername(@PathVariable String username) {
+    public User getUserByUsername(@AuthenticationPrincipal TenmoPrincipal principal, @PathVariable String username) {
+        if (principal == null || !principal.getUsername().equalsIgnoreCase(username.trim())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot act on another user's account");
+        }
         return userDao.getUserByUsername(username);
     }
+
+    // Every account with its owner's id and username, in one call, for the payee picker
+    @RequestMapping(path = "/payees", method = RequestMethod.GET)
+    @PreAuthorize("hasRole('USER')")
+    public List<PayeeDto> getPayees() {
+        return userDao.getPayees();
+    }
+
+    // Account id -> username for the given accountId parameters
+    @RequestMapping(path = "/directory", method = RequestMethod.GET)
+    @PreAuthorize("hasRole('USER')")
+    public Map<Integer, String> getDirectory(@RequestParam Set<Integer> accountId) {
+        if (accountId.isEmpty() || accountId.size() > MAX_DIRECTORY_LOOKUP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A lookup must name between 1 and " + MAX_DIRECTORY_LOOKUP + " account ids");
+        }
+        return userDao.getUsernamesByAccountIds(accountId);
+    }
 }
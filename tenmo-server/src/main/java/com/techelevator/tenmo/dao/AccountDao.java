@@ -2,7 +2,10 @@ package com.techelevator.tenmo.dao;
 
 import com.techelevator.tenmo.model.Account;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface AccountDao {
 
@@ -12,5 +15,9 @@ public interface AccountDao {
 
     Account getAccountObjByAccountId(int userId, int accountId);
 
-    Account updateAccountBalance(int userId, int accountId, Account updatedAccount);
+    void transferFunds(int accountFrom, int accountTo, BigDecimal amount);
+
+    Map<Integer, BigDecimal> lockBalances(Collection<Integer> accountIds);
+
+    void adjustBalances(Map<Integer, BigDecimal> balanceChanges);
 }
\ No newline at end of file
@@ -6,11 +6,18 @@ import com.techelevator.tenmo.model.Account;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class JdbcAccountDao implements AccountDao {
@@ -24,13 +31,9 @@ public class JdbcAccountDao implements AccountDao {
     @Override
     public List<Account> getAccounts() {
         List<Account> allAccounts = new ArrayList<>();
-        String sql = "SELECT * FROM account;";
+        String sql = "SELECT account_id, user_id, balance FROM account;";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql);
-            while (results.next()) {
-                Account accountResults = mapRowToAccount(results);
-                allAccounts.add(accountResults);
-            }
+            allAccounts = jdbcTemplate.query(sql, this::mapRowToAccount);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
@@ -42,33 +45,26 @@ public class JdbcAccountDao implements AccountDao {
 
     @Override
     public Account getAccountByUserId(int userId) {
-        List<Account> accountList = getAccounts();
-        Account userAccount = null;
+        Account account = null;
+        String sql = "SELECT account_id, user_id, balance FROM account WHERE user_id = ? ORDER BY account_id LIMIT 1;";
         try {
-            for (Account account : accountList) {
-                if (account.getUser_id() == userId) {
-                    userAccount = account;
-                    break;
-                }
-            }
-            if (userAccount == null) {
+            account = queryForAccount(sql, userId);
+            if (account == null) {
                 throw new AccountExceptions.AccountNotFoundException("Account for user ID " + userId + " not found.");
             }
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
-        return userAccount;
+        return account;
     }
 
     @Override
     public Account getAccountObjByAccountId(int userId, int accountId) {
         Account account = null;
-        String sql = "SELECT * FROM account WHERE account_id = ?;";
+        String sql = "SELECT account_id, user_id, balance FROM account WHERE account_id = ?;";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, accountId);
-            if (results.next()) {
-                account = mapRowToAccount(results);
-            }  else {
+            account = queryForAccount(sql, accountId);
+            if (account == null) {
                 throw new AccountExceptions.AccountNotFoundException("Account ID " + accountId + " not found.");
             }
         } catch (CannotGetJdbcConnectionException e) {
@@ -77,30 +73,96 @@ public class JdbcAccountDao implements AccountDao {
         return account;
     }
 
+    /**
+     * Moves money between two accounts with relative updates. Both rows are locked in account_id order so that
+     * concurrent transfers between the same pair of accounts queue up instead of deadlocking, and the balance is
+     * checked on the locked row so nothing is written if the sender is short. Must run inside the caller's
+     * transaction.
+     */
     @Override
-    public Account updateAccountBalance(int userId, int accountId, Account updatedAccount) {
-        Account newAccount = null;
-        String sql = "UPDATE account SET balance = ? WHERE account_id = ?;";
+    public void transferFunds(int accountFrom, int accountTo, BigDecimal amount) {
+        String sql = "SELECT account_id, user_id, balance FROM account WHERE account_id IN (?, ?) ORDER BY account_id FOR UPDATE;";
         try {
-            int numberOfRows = jdbcTemplate.update(sql, updatedAccount.getBalance(), accountId);
-            if (numberOfRows == 0) {
-                throw new AccountExceptions.AccountUpdateException("Failed to update balance for account ID " + accountId);
-            } else {
-                newAccount = getAccountObjByAccountId(userId, accountId);
+            List<Account> lockedAccounts = jdbcTemplate.query(sql, this::mapRowToAccount, accountFrom, accountTo);
+            BigDecimal fromBalance = null;
+            boolean toFound = false;
+            for (Account lockedAccount : lockedAccounts) {
+                if (lockedAccount.getAccount_id() == accountFrom) {
+                    fromBalance = lockedAccount.getBalance();
+                }
+                if (lockedAccount.getAccount_id() == accountTo) {
+                    toFound = true;
+                }
+            }
+            if (fromBalance == null) {
+                throw new AccountExceptions.AccountNotFoundException("Account ID " + accountFrom + " not found.");
             }
-        } catch(CannotGetJdbcConnectionException e) {
+            if (!toFound) {
+                throw new AccountExceptions.AccountNotFoundException("Account ID " + accountTo + " not found.");
+            }
+            if (fromBalance.compareTo(amount) < 0) {
+                throw new AccountExceptions.InsufficientFundsException("Insufficient funds in account ID " + accountFrom);
+            }
+
+            jdbcTemplate.update("UPDATE account SET balance = balance - ? WHERE account_id = ?;", amount, accountFrom);
+            jdbcTemplate.update("UPDATE account SET balance = balance + ? WHERE account_id = ?;", amount, accountTo);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        } catch (DataIntegrityViolationException e) {
+            throw new DaoException("Data integrity violation", e);
+        }
+    }
+
+    /**
+     * Locks the given accounts FOR UPDATE in account_id order, the same order transferFunds uses, and returns their
+     * balances. Ids that do not exist are simply missing from the map. Must run inside the caller's transaction.
+     */
+    @Override
+    public Map<Integer, BigDecimal> lockBalances(Collection<Integer> accountIds) {
+        Map<Integer, BigDecimal> balances = new LinkedHashMap<>();
+        String sql = "SELECT account_id, balance FROM account WHERE account_id = ANY(?) ORDER BY account_id FOR UPDATE;";
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setArray(1, con.createArrayOf("int", accountIds.toArray()));
+                return ps;
+            }, (RowCallbackHandler) rs -> balances.put(rs.getInt(1), rs.getBigDecimal(2)));
+        } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
-        } catch(DataIntegrityViolationException e) {
+        }
+        return balances;
+    }
+
+    /**
+     * Adds each amount (negative for debits) to its account's balance as one JDBC batch. Callers are expected to hold
+     * the row locks from lockBalances and to have checked that no balance goes below zero.
+     */
+    @Override
+    public void adjustBalances(Map<Integer, BigDecimal> balanceChanges) {
+        String sql = "UPDATE account SET balance = balance + ? WHERE account_id = ?;";
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Map.Entry<Integer, BigDecimal> change : balanceChanges.entrySet()) {
+            batchArgs.add(new Object[] {change.getValue(), change.getKey()});
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, batchArgs);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        } catch (DataIntegrityViolationException e) {
             throw new DaoException("Data integrity violation", e);
         }
-        return newAccount;
     }
 
-    private Account mapRowToAccount(SqlRowSet results) {
+    private Account queryForAccount(String sql, Object... args) {
+        return jdbcTemplate.query(sql, rs -> rs.next() ? mapRowToAccount(rs, 1) : null, args);
+    }
+
+    // columns by position: account_id, user_id, balance
+    private Account mapRowToAccount(ResultSet rs, int rowNum) throws SQLException {
         Account account = new Account();
-        account.setUser_id(results.getInt("user_id"));
-        account.setAccount_id(results.getInt("account_id"));
-        account.setBalance(results.getBigDecimal("balance"));
+        account.setAccount_id(rs.getInt(1));
+        account.setUser_id(rs.getInt(2));
+        account.setBalance(rs.getBigDecimal(3));
         return account;
     }
 }
\ No newline at end of file
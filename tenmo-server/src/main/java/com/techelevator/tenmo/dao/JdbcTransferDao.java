@@ -1,35 +1,87 @@
 package com.techelevator.tenmo.dao;
 
+import com.techelevator.tenmo.exception.AccountExceptions;
 import com.techelevator.tenmo.exception.DaoException;
 import com.techelevator.tenmo.exception.TransferExceptions;
 import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.model.TransferBatchResultDto;
+import com.techelevator.tenmo.model.TransferDetailDto;
+import com.techelevator.tenmo.model.TransferDetailPageDto;
+import com.techelevator.tenmo.model.TransferPageDto;
+import com.techelevator.tenmo.notification.ChangeBus;
+import com.techelevator.tenmo.notification.TransferChangedEvent;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 @Repository
 public class JdbcTransferDao implements TransferDao{
 
+    private static final int TRANSFER_TYPE_SEND = 2;
+    private static final int TRANSFER_STATUS_PENDING = 1;
+    private static final int TRANSFER_STATUS_APPROVED = 2;
+    private static final int TRANSFER_STATUS_REJECTED = 3;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    // One history page: parameters are after, limit + 1, user_id, after, limit + 1, user_id, limit + 1
+    private static final String HISTORY_PAGE_SQL =
+            "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM (" +
+            "SELECT t.* FROM account a CROSS JOIN LATERAL (" +
+            "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer " +
+            "WHERE account_from = a.account_id AND transfer_id < ? ORDER BY transfer_id DESC LIMIT ?) t " +
+            "WHERE a.user_id = ? " +
+            "UNION ALL " +
+            "SELECT t.* FROM account a CROSS JOIN LATERAL (" +
+            "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer " +
+            "WHERE account_to = a.account_id AND transfer_id < ? ORDER BY transfer_id DESC LIMIT ?) t " +
+            "WHERE a.user_id = ?" +
+            ") page ORDER BY transfer_id DESC LIMIT ?";
+
+    // Joins type and status descriptions and both usernames onto a set of transfers aliased as t
+    private static final String DETAIL_COLUMNS =
+            "SELECT t.transfer_id, tt.transfer_type_desc, ts.transfer_status_desc, " +
+            "t.account_from, uf.username, t.account_to, ut.username, t.amount ";
+    private static final String DETAIL_JOINS =
+            "JOIN transfer_type tt ON tt.transfer_type_id = t.transfer_type_id " +
+            "JOIN transfer_status ts ON ts.transfer_status_id = t.transfer_status_id " +
+            "JOIN account af ON af.account_id = t.account_from JOIN tenmo_user uf ON uf.user_id = af.user_id " +
+            "JOIN account at ON at.account_id = t.account_to JOIN tenmo_user ut ON ut.user_id = at.user_id ";
+
     private final JdbcTemplate jdbcTemplate;
+    private final AccountDao accountDao;
+    // Every created transfer and status change is published to all nodes; listeners see it once the write commits.
+    // Balances only change alongside a transfer, so its event also tells listeners both accounts changed.
+    private final ChangeBus changeBus;
 
-    public JdbcTransferDao(JdbcTemplate jdbcTemplate, AccountDao accountDao) {
+    public JdbcTransferDao(JdbcTemplate jdbcTemplate, AccountDao accountDao, ChangeBus changeBus) {
         this.jdbcTemplate = jdbcTemplate;
+        this.accountDao = accountDao;
+        this.changeBus = changeBus;
     }
 
     @Override
     public List<Transfer> getAllTransfers() {
         List<Transfer> transferList = new ArrayList<>();
-        String sql = "SELECT * FROM transfer;";
+        String sql = "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer;";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql);
-            while (results.next()) {
-                transferList.add(mapRowToTransfer(results));
-            }
+            transferList = jdbcTemplate.query(sql, this::mapRowToTransfer);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
@@ -40,39 +92,102 @@ public class JdbcTransferDao implements TransferDao{
         return transferList;
     }
 
+    /**
+     * Hands every transfer to the consumer in transfer_id order without building a list. Inside a transaction the
+     * driver reads through a server-side cursor EXPORT_FETCH_SIZE rows at a time, so memory use does not grow with
+     * the size of the table.
+     */
     @Override
-    public List<Transfer> getTransferHistoryByUserId(int userId) {
+    @Transactional(readOnly = true)
+    public void streamAllTransfers(Consumer<Transfer> consumer) {
+        String sql = "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer ORDER BY transfer_id;";
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(EXPORT_FETCH_SIZE);
+                return ps;
+            }, (RowCallbackHandler) rs -> consumer.accept(mapRowToTransfer(rs, 0)));
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
+    }
+
+    /**
+     * Keyset pagination over the user's history, newest first. The cursor is the last transfer_id of the previous
+     * page, so every page is a bounded range read no matter how deep into the history it is. One extra row is
+     * fetched to tell whether another page exists. The sent and received halves are separate per-account probes of
+     * the (account_from, transfer_id) and (account_to, transfer_id) indexes, which already return rows in page
+     * order, merged and cut to the page size.
+     */
+    @Override
+    public TransferPageDto getTransferHistoryPageByUserId(int userId, Integer afterTransferId, int limit) {
         List<Transfer> transferList = new ArrayList<>();
-        String sql = "SELECT t.transfer_id, t.transfer_type_id, t.transfer_status_id, t.account_from, t.account_to, t.amount FROM transfer t " +
-                "JOIN account a ON a.account_id = t.account_from OR a.account_id = t.account_to " +
-                "WHERE a.user_id = ?;";
+        String sql = HISTORY_PAGE_SQL + ";";
+        int after = afterTransferId == null ? Integer.MAX_VALUE : afterTransferId;
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, userId);
-            while (results.next()) {
-                transferList.add(mapRowToTransfer(results));
-            }
+            transferList = jdbcTemplate.query(sql, this::mapRowToTransfer, after, limit + 1, userId, after, limit + 1, userId, limit + 1);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
 
-        if (transferList.isEmpty()) {
-            throw new TransferExceptions.TransferListNotFoundException("No transfer history found for userId " + userId);
+        Integer nextCursor = null;
+        if (transferList.size() > limit) {
+            transferList.remove(limit);
+            nextCursor = transferList.get(limit - 1).getTransferId();
+        }
+        return new TransferPageDto(transferList, nextCursor);
+    }
+
+    /**
+     * The same page as getTransferHistoryPageByUserId, ready to display. The lookups are joined after the page is
+     * cut, so they cost a fixed number of primary key probes per row on the page.
+     */
+    @Override
+    public TransferDetailPageDto getTransferDetailPageByUserId(int userId, Integer afterTransferId, int limit) {
+        List<TransferDetailDto> transferList = new ArrayList<>();
+        String sql = DETAIL_COLUMNS + "FROM (" + HISTORY_PAGE_SQL + ") t " + DETAIL_JOINS + "ORDER BY t.transfer_id DESC;";
+        int after = afterTransferId == null ? Integer.MAX_VALUE : afterTransferId;
+        try {
+            transferList = jdbcTemplate.query(sql, this::mapRowToTransferDetail, after, limit + 1, userId, after, limit + 1, userId, limit + 1);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
         }
 
-        return transferList;
+        Integer nextCursor = null;
+        if (transferList.size() > limit) {
+            transferList.remove(limit);
+            nextCursor = transferList.get(limit - 1).getTransferId();
+        }
+        return new TransferDetailPageDto(transferList, nextCursor);
+    }
+
+    @Override
+    public TransferDetailDto getTransferDetailByTransferId(int userId, int transferId) {
+        TransferDetailDto transfer = null;
+        String sql = DETAIL_COLUMNS + "FROM transfer t " + DETAIL_JOINS +
+                "WHERE t.transfer_id = ? " +
+                "AND EXISTS (SELECT 1 FROM account a WHERE a.user_id = ? AND a.account_id IN (t.account_from, t.account_to));";
+        try {
+            transfer = jdbcTemplate.query(sql, rs -> rs.next() ? mapRowToTransferDetail(rs, 1) : null, transferId, userId);
+            if (transfer == null) {
+                throw new TransferExceptions.TransferNotFoundException("Transfer ID " + transferId + " not found.");
+            }
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
+        return transfer;
     }
 
     @Override
     public List<Transfer> getTransferHistoryInPendingByUserId(int userId) {
         List<Transfer> transferList = new ArrayList<>();
         String sql = "SELECT t.transfer_id, t.transfer_type_id, t.transfer_status_id, t.account_from, t.account_to, t.amount FROM transfer t " +
-                "JOIN account a ON a.account_id = t.account_from OR a.account_id = t.account_to " +
-                "WHERE a.user_id = ? AND t.transfer_status_id = 1;";
+                "WHERE t.transfer_status_id = 1 AND t.account_from = ANY(ARRAY(SELECT account_id FROM account WHERE user_id = ?)) " +
+                "UNION ALL " +
+                "SELECT t.transfer_id, t.transfer_type_id, t.transfer_status_id, t.account_from, t.account_to, t.amount FROM transfer t " +
+                "WHERE t.transfer_status_id = 1 AND t.account_to = ANY(ARRAY(SELECT account_id FROM account WHERE user_id = ?));";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, userId);
-            while (results.next()) {
-                transferList.add(mapRowToTransfer(results));
-            }
+            transferList = jdbcTemplate.query(sql, this::mapRowToTransfer, userId, userId);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
@@ -88,13 +203,11 @@ public class JdbcTransferDao implements TransferDao{
     public Transfer getTransferByTransferId(int userId, int transferId) {
         Transfer transfer = null;
         String sql = "SELECT t.transfer_id, t.transfer_type_id, t.transfer_status_id, t.account_from, t.account_to, t.amount FROM transfer t " +
-                "JOIN account a ON a.account_id = t.account_from OR a.account_id = t.account_to " +
-                "WHERE a.user_id = ? AND t.transfer_id = ?;";
+                "WHERE t.transfer_id = ? " +
+                "AND EXISTS (SELECT 1 FROM account a WHERE a.user_id = ? AND a.account_id IN (t.account_from, t.account_to));";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, userId, transferId);
-            if (results.next()) {
-                transfer = mapRowToTransfer(results);
-            } else {
+            transfer = queryForTransfer(sql, transferId, userId);
+            if (transfer == null) {
                 throw new TransferExceptions.TransferNotFoundException("Transfer ID " + transferId + " not found.");
             }
         } catch (CannotGetJdbcConnectionException e) {
@@ -104,75 +217,314 @@ public class JdbcTransferDao implements TransferDao{
     }
 
     @Override
-    public Transfer updateTransfer(int userId, int transferId, Transfer transfer) {
-        Transfer updatedTransfer = null;
-        String sql = "UPDATE transfer SET transfer_status_id = ? WHERE transfer_id = ?;";
+    public Transfer getTransferByOnlyTransferId(int transferId) {
+        Transfer transfer = null;
+        String sql = "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer WHERE transfer_id = ?;";
         try {
-            int numberOfRows = jdbcTemplate.update(sql, transfer.getTransferStatusId(), transferId);
-            if (numberOfRows == 0) {
-                throw new TransferExceptions.TransferUpdateException("Failed to update transfer ID " + transferId);
+            transfer = queryForTransfer(sql, transferId);
+            if (transfer == null) {
+                throw new TransferExceptions.TransferNotFoundException("Transfer ID " + transferId + " not found.");
+            }
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
+        return transfer;
+    }
+
+    /**
+     * Creates the transfer. A non-null idempotency key makes the call safe to retry: if the user already created a
+     * transfer under that key the insert does nothing and the existing transfer is returned instead. Keys belong to
+     * the user who sent them, so another user's key neither clashes nor replays.
+     */
+    @Override
+    @Transactional
+    public Transfer createTransfer(int userId, Transfer updatedTransfer, String idempotencyKey) {
+        Transfer newTransfer = insertTransfer(updatedTransfer, userId, idempotencyKey);
+        if (newTransfer != null) {
+            publish(TransferChangedEvent.Change.CREATED, newTransfer);
+        } else if (idempotencyKey != null) {
+            newTransfer = getTransferByIdempotencyKey(userId, idempotencyKey);
+        }
+
+        if (newTransfer == null) {
+            throw new TransferExceptions.TransferCreationException("Failed to create new transfer");
+        }
+
+        return newTransfer;
+    }
+
+    /**
+     * Sends money from the user's account and records the Send transfer. The caller passes the account id it already
+     * holds from the token, so no lookup is needed. If the user already created a transfer under the idempotency key,
+     * it is returned and no money moves. Calls with the same user and key take turns on a transaction-level advisory
+     * lock, so a duplicate arriving while the original is still running waits for it and then gets it back.
+     */
+    @Override
+    @Transactional
+    public Transfer sendTransfer(int userId, int accountFrom, Transfer transfer, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            lockIdempotencyKey(userId, idempotencyKey);
+            Transfer existingTransfer = getTransferByIdempotencyKey(userId, idempotencyKey);
+            if (existingTransfer != null) {
+                return existingTransfer;
+            }
+        }
+        if (transfer.getAmount() == null || transfer.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new TransferExceptions.TransferCreationException("Transfer amount must be greater than zero");
+        }
+        if (accountFrom == transfer.getAccountTo()) {
+            throw new TransferExceptions.TransferCreationException("Cannot send money to your own account");
+        }
+
+        Transfer newTransfer = new Transfer();
+        newTransfer.setTransferTypeId(TRANSFER_TYPE_SEND);
+        newTransfer.setTransferStatusId(TRANSFER_STATUS_APPROVED);
+        newTransfer.setAccountFrom(accountFrom);
+        newTransfer.setAccountTo(transfer.getAccountTo());
+        newTransfer.setAmount(transfer.getAmount());
+
+        accountDao.transferFunds(accountFrom, newTransfer.getAccountTo(), newTransfer.getAmount());
+
+        // Still taken here only if the key was first used to create a request rather than a send
+        Transfer sentTransfer = insertTransfer(newTransfer, userId, idempotencyKey);
+        if (sentTransfer == null) {
+            throw new TransferExceptions.TransferCreationException("Idempotency key " + idempotencyKey + " is already in use");
+        }
+        publish(TransferChangedEvent.Change.CREATED, sentTransfer);
+        return sentTransfer;
+    }
+
+    /**
+     * Sends money from the given account to many payees in one transaction. Every item is checked before anything
+     * is written: the amount must be positive, the payee must exist and must not be the sender, and the running total
+     * must stay within the sender's locked balance. One bad item leaves the whole batch unsaved, with the reason
+     * recorded against its index. A valid batch takes a fixed number of round trips whatever its size: lock the
+     * accounts, allocate ids, run one batched insert, run one batched balance update. Every row records the user as
+     * its creator and the id of the batch's first transfer as batch_id. The idempotency key is stored on the first
+     * row, and a retry under the same key takes the same advisory lock as sendTransfer and gets the saved batch back
+     * without moving any money.
+     */
+    @Override
+    @Transactional
+    public TransferBatchResultDto sendTransferBatch(int userId, int accountFrom, List<Transfer> transfers, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            lockIdempotencyKey(userId, idempotencyKey);
+            Transfer existingTransfer = getTransferByIdempotencyKey(userId, idempotencyKey);
+            if (existingTransfer != null) {
+                List<Transfer> existingBatch = getTransfersByBatchId(existingTransfer.getTransferId());
+                if (existingBatch.isEmpty()) {
+                    throw new TransferExceptions.TransferCreationException("Idempotency key " + idempotencyKey + " is already in use");
+                }
+                return new TransferBatchResultDto(true, existingBatch, Collections.emptyMap());
+            }
+        }
+
+        Set<Integer> accountIds = new TreeSet<>();
+        accountIds.add(accountFrom);
+        for (Transfer transfer : transfers) {
+            if (transfer != null) {
+                accountIds.add(transfer.getAccountTo());
+            }
+        }
+        Map<Integer, BigDecimal> balances = accountDao.lockBalances(accountIds);
+        if (!balances.containsKey(accountFrom)) {
+            throw new AccountExceptions.AccountNotFoundException("Account ID " + accountFrom + " not found.");
+        }
+
+        Map<Integer, String> errors = new TreeMap<>();
+        Map<Integer, BigDecimal> balanceChanges = new TreeMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            BigDecimal amount = transfer == null ? null : transfer.getAmount();
+            if (transfer == null) {
+                errors.put(i, "Transfer is missing");
+            } else if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+                errors.put(i, "Transfer amount must be greater than zero");
+            } else if (transfer.getAccountTo() == accountFrom) {
+                errors.put(i, "Cannot send money to your own account");
+            } else if (!balances.containsKey(transfer.getAccountTo())) {
+                errors.put(i, "Account ID " + transfer.getAccountTo() + " not found.");
+            } else if (balances.get(accountFrom).compareTo(total.add(amount)) < 0) {
+                errors.put(i, "Insufficient funds in account ID " + accountFrom);
             } else {
-                updatedTransfer = getTransferByOnlyTransferId(transfer.getTransferId());
+                total = total.add(amount);
+                balanceChanges.merge(transfer.getAccountTo(), amount, BigDecimal::add);
+            }
+        }
+        if (!errors.isEmpty()) {
+            return new TransferBatchResultDto(false, Collections.emptyList(), errors);
+        }
+        balanceChanges.put(accountFrom, total.negate());
+
+        List<Transfer> newTransfers = new ArrayList<>();
+        List<Object[]> batchArgs = new ArrayList<>();
+        String sql = "INSERT INTO transfer (transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount, " +
+                "created_by, idempotency_key, batch_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);";
+        try {
+            // Sorted so that transfer id order is request order, which is how a replay reads the batch back
+            List<Integer> transferIds = jdbcTemplate.queryForList("SELECT nextval('seq_transfer_id') FROM generate_series(1, ?) ORDER BY 1;",
+                    Integer.class, transfers.size());
+            int batchId = transferIds.get(0);
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer newTransfer = new Transfer();
+                newTransfer.setTransferId(transferIds.get(i));
+                newTransfer.setTransferTypeId(TRANSFER_TYPE_SEND);
+                newTransfer.setTransferStatusId(TRANSFER_STATUS_APPROVED);
+                newTransfer.setAccountFrom(accountFrom);
+                newTransfer.setAccountTo(transfers.get(i).getAccountTo());
+                newTransfer.setAmount(transfers.get(i).getAmount());
+                newTransfers.add(newTransfer);
+                batchArgs.add(new Object[] {newTransfer.getTransferId(), newTransfer.getTransferTypeId(), newTransfer.getTransferStatusId(),
+                        newTransfer.getAccountFrom(), newTransfer.getAccountTo(), newTransfer.getAmount(),
+                        userId, i == 0 ? idempotencyKey : null, batchId});
             }
+            jdbcTemplate.batchUpdate(sql, batchArgs);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
+        } catch (DuplicateKeyException e) {
+            // createTransfer does not take the advisory lock, so a request can claim the key after the check above
+            throw new TransferExceptions.TransferCreationException("Idempotency key " + idempotencyKey + " is already in use");
         } catch (DataIntegrityViolationException e) {
             throw new DaoException("Data integrity violation", e);
         }
-        return updatedTransfer;
+        accountDao.adjustBalances(balanceChanges);
+        List<TransferChangedEvent> events = new ArrayList<>(newTransfers.size());
+        for (Transfer newTransfer : newTransfers) {
+            events.add(new TransferChangedEvent(TransferChangedEvent.Change.CREATED, newTransfer));
+        }
+        changeBus.publishAll(events);
+
+        return new TransferBatchResultDto(true, newTransfers, Collections.emptyMap());
     }
 
     @Override
-    public Transfer getTransferByOnlyTransferId(int transferId) {
+    @Transactional
+    public Transfer approveTransfer(int userId, int transferId) {
+        Transfer approvedTransfer = claimPendingTransfer(userId, transferId, TRANSFER_STATUS_APPROVED);
+        // Throwing here rolls the status change back along with any balance change
+        accountDao.transferFunds(approvedTransfer.getAccountFrom(), approvedTransfer.getAccountTo(), approvedTransfer.getAmount());
+        publish(TransferChangedEvent.Change.UPDATED, approvedTransfer);
+        return approvedTransfer;
+    }
+
+    @Override
+    @Transactional
+    public Transfer rejectTransfer(int userId, int transferId) {
+        Transfer rejectedTransfer = claimPendingTransfer(userId, transferId, TRANSFER_STATUS_REJECTED);
+        publish(TransferChangedEvent.Change.UPDATED, rejectedTransfer);
+        return rejectedTransfer;
+    }
+
+    /**
+     * Moves a Pending transfer to a new status in a single statement. The transfer_status_id guard makes the update a
+     * compare-and-set: of several concurrent approvers or rejecters exactly one sees the row, the rest get a
+     * TransferUpdateException. Only the user being asked for money (the account_from owner) may decide.
+     */
+    private Transfer claimPendingTransfer(int userId, int transferId, int newStatusId) {
         Transfer transfer = null;
-        String sql = "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer WHERE transfer_id = ?;";
+        String sql = "UPDATE transfer SET transfer_status_id = ? " +
+                "WHERE transfer_id = ? AND transfer_status_id = ? " +
+                "AND account_from = ANY(ARRAY(SELECT account_id FROM account WHERE user_id = ?)) " +
+                "RETURNING transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount;";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, transferId);
-            if (results.next()) {
-                transfer = mapRowToTransfer(results);
-            }else {
-                throw new TransferExceptions.TransferNotFoundException("Transfer ID " + transferId + " not found.");
+            transfer = queryForTransfer(sql, newStatusId, transferId, TRANSFER_STATUS_PENDING, userId);
+            if (transfer == null) {
+                throw new TransferExceptions.TransferUpdateException("Transfer ID " + transferId + " is not a pending request for user ID " + userId);
             }
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
+        } catch (DataIntegrityViolationException e) {
+            throw new DaoException("Data integrity violation", e);
         }
         return transfer;
     }
 
-    @Override
-    public Transfer createTransfer(int userId, Transfer updatedTransfer) {
-        Transfer newTransfer = null;
-        String sql = "INSERT INTO transfer (transfer_type_id, transfer_status_id, account_from, account_to, amount) VALUES (?, ?, ?, ?, ?) RETURNING transfer_id;";
+    // Returns null instead of inserting when the user has already used the idempotency key
+    private Transfer insertTransfer(Transfer transfer, int userId, String idempotencyKey) {
+        String sql = "INSERT INTO transfer (transfer_type_id, transfer_status_id, account_from, account_to, amount, created_by, idempotency_key) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (created_by, idempotency_key) DO NOTHING " +
+                "RETURNING transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount;";
         try {
-            int newTransferId =
-                    jdbcTemplate.queryForObject(sql, int.class,
-                            updatedTransfer.getTransferTypeId(),
-                            updatedTransfer.getTransferStatusId(),
-                            updatedTransfer.getAccountFrom(),
-                            updatedTransfer.getAccountTo(),
-                            updatedTransfer.getAmount());
-            newTransfer = getTransferByOnlyTransferId(newTransferId);
+            return queryForTransfer(sql,
+                    transfer.getTransferTypeId(),
+                    transfer.getTransferStatusId(),
+                    transfer.getAccountFrom(),
+                    transfer.getAccountTo(),
+                    transfer.getAmount(),
+                    userId,
+                    idempotencyKey);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         } catch (DataIntegrityViolationException e) {
             throw new DaoException("Data integrity violation", e);
         }
+    }
 
-        if (newTransfer == null) {
-            throw new TransferExceptions.TransferCreationException("Failed to create new transfer");
+    // Only the user who created a transfer can replay it by key; a probe of the (created_by, idempotency_key) index
+    private Transfer getTransferByIdempotencyKey(int userId, String idempotencyKey) {
+        String sql = "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer " +
+                "WHERE created_by = ? AND idempotency_key = ?;";
+        try {
+            return queryForTransfer(sql, userId, idempotencyKey);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
         }
+    }
 
-        return newTransfer;
+    private List<Transfer> getTransfersByBatchId(int batchId) {
+        String sql = "SELECT transfer_id, transfer_type_id, transfer_status_id, account_from, account_to, amount FROM transfer " +
+                "WHERE batch_id = ? ORDER BY transfer_id;";
+        try {
+            return jdbcTemplate.query(sql, this::mapRowToTransfer, batchId);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
+    }
+
+    // Held until the transaction ends; a hash collision between keys only makes two unrelated calls take turns
+    private void lockIdempotencyKey(int userId, String idempotencyKey) {
+        try {
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, hashtext(?));", (RowCallbackHandler) rs -> { }, userId, idempotencyKey);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
     }
 
-    private Transfer mapRowToTransfer(SqlRowSet results) {
+    private void publish(TransferChangedEvent.Change change, Transfer transfer) {
+        changeBus.publish(new TransferChangedEvent(change, transfer));
+    }
+
+    private Transfer queryForTransfer(String sql, Object... args) {
+        return jdbcTemplate.query(sql, rs -> rs.next() ? mapRowToTransfer(rs, 1) : null, args);
+    }
+
+    /**
+     * Maps the current row by column position, so every query feeding it must select exactly transfer_id,
+     * transfer_type_id, transfer_status_id, account_from, account_to, amount in that order.
+     */
+    private Transfer mapRowToTransfer(ResultSet rs, int rowNum) throws SQLException {
         Transfer transfer = new Transfer();
-        transfer.setTransferId(results.getInt("transfer_id"));
-        transfer.setTransferTypeId(results.getInt("transfer_type_id"));
-        transfer.setTransferStatusId(results.getInt("transfer_status_id"));
-        transfer.setAccountFrom(results.getInt("account_from"));
-        transfer.setAccountTo(results.getInt("account_to"));
-        transfer.setAmount(results.getBigDecimal("amount"));
+        transfer.setTransferId(rs.getInt(1));
+        transfer.setTransferTypeId(rs.getInt(2));
+        transfer.setTransferStatusId(rs.getInt(3));
+        transfer.setAccountFrom(rs.getInt(4));
+        transfer.setAccountTo(rs.getInt(5));
+        transfer.setAmount(rs.getBigDecimal(6));
+        return transfer;
+    }
+
+    // columns by position: see DETAIL_COLUMNS
+    private TransferDetailDto mapRowToTransferDetail(ResultSet rs, int rowNum) throws SQLException {
+        TransferDetailDto transfer = new TransferDetailDto();
+        transfer.setTransferId(rs.getInt(1));
+        transfer.setTransferType(rs.getString(2));
+        transfer.setTransferStatus(rs.getString(3));
+        transfer.setAccountFrom(rs.getInt(4));
+        transfer.setUsernameFrom(rs.getString(5));
+        transfer.setAccountTo(rs.getInt(6));
+        transfer.setUsernameTo(rs.getString(7));
+        transfer.setAmount(rs.getBigDecimal(8));
         return transfer;
     }
-}
\ No newline at end of file
+}
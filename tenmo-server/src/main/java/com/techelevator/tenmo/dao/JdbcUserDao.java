@@ -1,38 +1,58 @@
 package com.techelevator.tenmo.dao;
 
 import com.techelevator.tenmo.exception.DaoException;
+import com.techelevator.tenmo.model.PayeeDto;
 import com.techelevator.tenmo.model.RegisterUserDto;
 import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.notification.ChangeBus;
+import com.techelevator.tenmo.notification.UserChangedEvent;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class JdbcUserDao implements UserDao {
 
     private static final BigDecimal STARTING_BALANCE = new BigDecimal("1000.00");
+    // Sized and timed by spring.cache.caffeine.spec. Misses (null results) are never cached, so a lookup for a user
+    // who has not registered yet cannot hide them once they do. Entries are evicted on every node by UserChangedEvent.
+    public static final String USERS_BY_ID_CACHE = "usersById";
+    public static final String USERS_BY_USERNAME_CACHE = "usersByUsername";
     private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ChangeBus changeBus;
+    private final TransactionOperations transactionOperations;
 
-    public JdbcUserDao(JdbcTemplate jdbcTemplate) {
+    public JdbcUserDao(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, ChangeBus changeBus,
+                       TransactionOperations transactionOperations) {
         this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.changeBus = changeBus;
+        this.transactionOperations = transactionOperations;
     }
 
     @Override
+    @Cacheable(cacheNames = USERS_BY_ID_CACHE, unless = "#result == null")
     public User getUserById(int userId) {
         User user = null;
         String sql = "SELECT user_id, username, password_hash FROM tenmo_user WHERE user_id = ?";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql, userId);
-            if (results.next()) {
-                user = mapRowToUser(results);
-            }
+            user = queryForUser(sql, userId);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
@@ -44,11 +64,7 @@ public class JdbcUserDao implements UserDao {
         List<User> users = new ArrayList<>();
         String sql = "SELECT user_id, username, password_hash FROM tenmo_user";
         try {
-            SqlRowSet results = jdbcTemplate.queryForRowSet(sql);
-            while (results.next()) {
-                User user = mapRowToUser(results);
-                users.add(user);
-            }
+            users = jdbcTemplate.query(sql, this::mapRowToUser);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
@@ -56,15 +72,13 @@ public class JdbcUserDao implements UserDao {
     }
 
     @Override
+    @Cacheable(cacheNames = USERS_BY_USERNAME_CACHE, key = "#username.trim().toLowerCase()", condition = "#username != null", unless = "#result == null")
     public User getUserByUsername(String username) {
         if (username == null) throw new IllegalArgumentException("Username cannot be null");
         User user = null;
         String sql = "SELECT user_id, username, password_hash FROM tenmo_user WHERE username = LOWER(TRIM(?));";
         try {
-            SqlRowSet rowSet = jdbcTemplate.queryForRowSet(sql, username);
-            if (rowSet.next()) {
-                user = mapRowToUser(rowSet);
-            }
+            user = queryForUser(sql, username);
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
         }
@@ -73,31 +87,73 @@ public class JdbcUserDao implements UserDao {
 
     @Override
     public User createUser(RegisterUserDto user) {
-        User newUser = null;
-        // create user
-        String sql = "INSERT INTO tenmo_user (username, password_hash) VALUES (LOWER(TRIM(?)), ?) RETURNING user_id";
-        String password_hash = new BCryptPasswordEncoder().encode(user.getPassword());
-        try {
-            int newUserId = jdbcTemplate.queryForObject(sql, int.class, user.getUsername(), password_hash);
-            newUser = getUserById(newUserId);
-            if (newUser != null) {
-                // create account
-                sql = "INSERT INTO account (user_id, balance) VALUES (?, ?)";
-                jdbcTemplate.update(sql, newUserId, STARTING_BALANCE);
+        // create user and account in one statement, so both exist or neither does
+        String sql = "WITH new_user AS (" +
+                "INSERT INTO tenmo_user (username, password_hash) VALUES (LOWER(TRIM(?)), ?) RETURNING user_id, username, password_hash" +
+                "), new_account AS (" +
+                "INSERT INTO account (user_id, balance) SELECT user_id, ? FROM new_user" +
+                ") SELECT user_id, username, password_hash FROM new_user;";
+        // Hashed before the transaction starts, so no pooled connection is held while BCrypt runs
+        String password_hash = passwordEncoder.encode(user.getPassword());
+        // The insert and its NOTIFY commit together: a failed NOTIFY rolls the user back rather than failing a
+        // registration that actually happened
+        return transactionOperations.execute(status -> {
+            User newUser;
+            try {
+                newUser = queryForUser(sql, user.getUsername(), password_hash, STARTING_BALANCE);
+            } catch (CannotGetJdbcConnectionException e) {
+                throw new DaoException("Unable to connect to server or database", e);
+            } catch (DataIntegrityViolationException e) {
+                throw new DaoException("Data integrity violation", e);
             }
+            changeBus.publish(new UserChangedEvent(newUser.getId(), newUser.getUsername()));
+            return newUser;
+        });
+    }
+
+    /**
+     * Resolves account ids to the usernames that own them in one query, probing the account and tenmo_user primary
+     * keys once per id. Ids with no account are left out of the map.
+     */
+    @Override
+    public Map<Integer, String> getUsernamesByAccountIds(Collection<Integer> accountIds) {
+        Map<Integer, String> usernames = new LinkedHashMap<>();
+        String sql = "SELECT a.account_id, u.username FROM account a JOIN tenmo_user u ON u.user_id = a.user_id " +
+                "WHERE a.account_id = ANY(?) ORDER BY a.account_id;";
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setArray(1, con.createArrayOf("int", accountIds.toArray()));
+                return ps;
+            }, (RowCallbackHandler) rs -> usernames.put(rs.getInt(1), rs.getString(2)));
         } catch (CannotGetJdbcConnectionException e) {
             throw new DaoException("Unable to connect to server or database", e);
-        } catch (DataIntegrityViolationException e) {
-            throw new DaoException("Data integrity violation", e);
         }
-        return newUser;
+        return usernames;
+    }
+
+    @Override
+    public List<PayeeDto> getPayees() {
+        List<PayeeDto> payees = new ArrayList<>();
+        String sql = "SELECT a.account_id, a.user_id, u.username FROM account a JOIN tenmo_user u ON u.user_id = a.user_id ORDER BY a.account_id;";
+        try {
+            payees = jdbcTemplate.query(sql, (rs, rowNum) -> new PayeeDto(rs.getInt(1), rs.getInt(2), rs.getString(3)));
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
+        return payees;
+    }
+
+    private User queryForUser(String sql, Object... args) {
+        return jdbcTemplate.query(sql, rs -> rs.next() ? mapRowToUser(rs, 1) : null, args);
     }
 
-    private User mapRowToUser(SqlRowSet rs) {
+    // columns by position: user_id, username, password_hash
+    private User mapRowToUser(ResultSet rs, int rowNum) throws SQLException {
         User user = new User();
-        user.setId(rs.getInt("user_id"));
-        user.setUsername(rs.getString("username"));
-        user.setPassword(rs.getString("password_hash"));
+        user.setId(rs.getInt(1));
+        user.setUsername(rs.getString(2));
+        user.setPassword(rs.getString(3));
         user.setActivated(true);
         user.setAuthorities("USER");
         return user;
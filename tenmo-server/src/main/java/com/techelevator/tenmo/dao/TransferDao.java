@@ -1,22 +1,39 @@
 package com.techelevator.tenmo.dao;
 
 import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.model.TransferBatchResultDto;
+import com.techelevator.tenmo.model.TransferDetailDto;
+import com.techelevator.tenmo.model.TransferDetailPageDto;
+import com.techelevator.tenmo.model.TransferPageDto;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TransferDao {
 
     List<Transfer> getAllTransfers();
 
-    List<Transfer> getTransferHistoryByUserId(int userId);
+    void streamAllTransfers(Consumer<Transfer> consumer);
+
+    TransferPageDto getTransferHistoryPageByUserId(int userId, Integer afterTransferId, int limit);
+
+    TransferDetailPageDto getTransferDetailPageByUserId(int userId, Integer afterTransferId, int limit);
+
+    TransferDetailDto getTransferDetailByTransferId(int userId, int transferId);
 
     List<Transfer> getTransferHistoryInPendingByUserId(int userId);
 
     Transfer getTransferByTransferId(int userId, int transferId);
 
-    Transfer updateTransfer(int userId, int transferId, Transfer transfer);
-
     Transfer getTransferByOnlyTransferId(int transferId);
 
-    Transfer createTransfer(int userId, Transfer updatedTransfer);
+    Transfer createTransfer(int userId, Transfer updatedTransfer, String idempotencyKey);
+
+    Transfer sendTransfer(int userId, int accountFrom, Transfer transfer, String idempotencyKey);
+
+    TransferBatchResultDto sendTransferBatch(int userId, int accountFrom, List<Transfer> transfers, String idempotencyKey);
+
+    Transfer approveTransfer(int userId, int transferId);
+
+    Transfer rejectTransfer(int userId, int transferId);
 }
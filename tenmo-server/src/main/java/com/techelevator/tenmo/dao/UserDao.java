@@ -1,9 +1,12 @@
 package com.techelevator.tenmo.dao;
 
+import com.techelevator.tenmo.model.PayeeDto;
 import com.techelevator.tenmo.model.RegisterUserDto;
 import com.techelevator.tenmo.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UserDao {
 
@@ -14,4 +17,8 @@ public interface UserDao {
     User getUserByUsername(String username);
 
     User createUser(RegisterUserDto user);
+
+    Map<Integer, String> getUsernamesByAccountIds(Collection<Integer> accountIds);
+
+    List<PayeeDto> getPayees();
 }
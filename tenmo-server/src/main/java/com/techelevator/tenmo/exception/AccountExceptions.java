@@ -14,9 +14,8 @@ public class AccountExceptions {
         }
     }
 
-
-    public static class AccountUpdateException extends RuntimeException {
-        public AccountUpdateException(String message) {
+    public static class InsufficientFundsException extends RuntimeException {
+        public InsufficientFundsException(String message) {
             super(message);
         }
     }
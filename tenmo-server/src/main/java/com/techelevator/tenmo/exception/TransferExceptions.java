@@ -24,4 +24,10 @@ public class TransferExceptions {
             super(message);
         }
     }
+
+    public static class EventStreamLimitException extends RuntimeException {
+        public EventStreamLimitException(String message) {
+            super(message);
+        }
+    }
 }
@@ -1,2 +1,10 @@
-package com.techelevator.tenmo.exception;public class UserExceptions {
+package com.techelevator.tenmo.exception;
+
+public class UserExceptions {
+
+    public static class PasswordHashingBusyException extends RuntimeException {
+        public PasswordHashingBusyException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.techelevator.tenmo.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of the AccountDao, TransferDao and UserDao beans as tenmo.dao, tagged with the DAO, the
+ * method and the exception it ended with, if any. Each exception is also counted in tenmo.dao.exceptions, so
+ * business failures such as InsufficientFundsException show up next to connection errors. A DAO method can call
+ * another DAO, and an exception thrown inside passes out through both, so it is only counted where it leaves the
+ * outermost DAO call, against that DAO.
+ */
+@Aspect
+@Component
+public class DaoMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+    // How many timed DAO calls the current thread is inside
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    public DaoMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.techelevator.tenmo.dao.AccountDao+.*(..)) || " +
+            "execution(public * com.techelevator.tenmo.dao.TransferDao+.*(..)) || " +
+            "execution(public * com.techelevator.tenmo.dao.UserDao+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String dao = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        String exception = "none";
+        int[] callDepth = depth.get();
+        callDepth[0]++;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            if (callDepth[0] == 1) {
+                meterRegistry.counter("tenmo.dao.exceptions", "dao", dao, "exception", exception).increment();
+            }
+            throw e;
+        } finally {
+            callDepth[0]--;
+            sample.stop(Timer.builder("tenmo.dao")
+                    .tag("dao", dao)
+                    .tag("method", method)
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -8,11 +8,17 @@ package com.techelevator.tenmo.model;
 public class LoginResponseDto {
 
     private String token;
+    private String refreshToken;
+    private long expiresIn;
     private User user;
+    private int accountId;
 
-    public LoginResponseDto(String token, User user) {
+    public LoginResponseDto(String token, String refreshToken, long expiresIn, User user, int accountId) {
         this.token = token;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
         this.user = user;
+        this.accountId = accountId;
     }
 
     public String getToken() {
@@ -30,4 +36,28 @@ public class LoginResponseDto {
     public void setUser(User user) {
         this.user = user;
     }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
 }
@@ -0,0 +1,44 @@
+package com.techelevator.tenmo.model;
+
+/**
+ * One account as the payee picker lists it: the account, its owner and the owner's username, read together so the
+ * picker needs no further lookups.
+ */
+public class PayeeDto {
+
+    private int accountId;
+    private int userId;
+    private String username;
+
+    public PayeeDto() { }
+
+    public PayeeDto(int accountId, int userId, String username) {
+        this.accountId = accountId;
+        this.userId = userId;
+        this.username = username;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+}
@@ -0,0 +1,21 @@
+package com.techelevator.tenmo.model;
+
+import javax.validation.constraints.NotEmpty;
+
+/*
+    RefreshTokenDto carries the refresh token a client received at login back to the refresh endpoint, which answers
+    with a new access token without checking the password again.
+ */
+public class RefreshTokenDto {
+
+    @NotEmpty
+    private String refreshToken;
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
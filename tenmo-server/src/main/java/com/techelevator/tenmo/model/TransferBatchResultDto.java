@@ -0,0 +1,47 @@
+package com.techelevator.tenmo.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch send. When committed is true, transfers holds the saved transfers in request order. When it is
+ * false nothing was saved, and errors maps the index of every rejected item to the reason it was rejected.
+ */
+public class TransferBatchResultDto {
+
+    private boolean committed;
+    private List<Transfer> transfers;
+    private Map<Integer, String> errors;
+
+    public TransferBatchResultDto() { }
+
+    public TransferBatchResultDto(boolean committed, List<Transfer> transfers, Map<Integer, String> errors) {
+        this.committed = committed;
+        this.transfers = transfers;
+        this.errors = errors;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public List<Transfer> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<Transfer> transfers) {
+        this.transfers = transfers;
+    }
+
+    public Map<Integer, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<Integer, String> errors) {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,35 @@
+package com.techelevator.tenmo.model;
+
+import java.util.List;
+
+/**
+ * One page of transfer details, newest first, paged the same way as TransferPageDto.
+ */
+public class TransferDetailPageDto {
+
+    private List<TransferDetailDto> transfers;
+    private Integer nextCursor;
+
+    public TransferDetailPageDto() { }
+
+    public TransferDetailPageDto(List<TransferDetailDto> transfers, Integer nextCursor) {
+        this.transfers = transfers;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TransferDetailDto> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<TransferDetailDto> transfers) {
+        this.transfers = transfers;
+    }
+
+    public Integer getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Integer nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,36 @@
+package com.techelevator.tenmo.model;
+
+import java.util.List;
+
+/**
+ * One page of a transfer history, newest first. Pass nextCursor back as the "after" parameter to get the next page;
+ * it is null on the last page.
+ */
+public class TransferPageDto {
+
+    private List<Transfer> transfers;
+    private Integer nextCursor;
+
+    public TransferPageDto() { }
+
+    public TransferPageDto(List<Transfer> transfers, Integer nextCursor) {
+        this.transfers = transfers;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transfer> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<Transfer> transfers) {
+        this.transfers = transfers;
+    }
+
+    public Integer getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Integer nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,17 @@
+package com.techelevator.tenmo.notification;
+
+import java.util.Collection;
+
+/**
+ * Announces a change made by a DAO write to every server node, this one included. Callers publish once, from inside
+ * the transaction that made the change, and do not need to know how many nodes are running.
+ */
+public interface ChangeBus {
+
+    void publish(Object event);
+
+    // Events from one batch write; implementations may send them together
+    default void publishAll(Collection<?> events) {
+        events.forEach(this::publish);
+    }
+}
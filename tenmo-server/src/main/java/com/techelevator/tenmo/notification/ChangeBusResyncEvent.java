@@ -0,0 +1,8 @@
+package com.techelevator.tenmo.notification;
+
+/**
+ * Published on this node when its connection to the change bus comes back after a drop. Changes other nodes made in
+ * between were never heard, so listeners throw away whatever they hold that such a change could have made stale.
+ */
+public class ChangeBusResyncEvent {
+}
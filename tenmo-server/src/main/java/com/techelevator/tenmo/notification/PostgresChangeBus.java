@@ -0,0 +1,226 @@
+package com.techelevator.tenmo.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.techelevator.tenmo.exception.DaoException;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries change events between server nodes over Postgres NOTIFY, with no broker in between. publish() queues a
+ * NOTIFY on the caller's connection, so other nodes hear of a change only once the transaction that made it commits,
+ * and never if it rolls back; this node's listeners get the event as an ordinary application event. Each node holds
+ * one connection of its own, outside the pool, LISTENing on the channel, and republishes what other nodes sent as
+ * application events, so a listener cannot tell a remote change from a local one. If that connection drops, a
+ * {@link ChangeBusResyncEvent} is published once it is back, since anything sent in between was missed.
+ */
+@Component
+public class PostgresChangeBus implements ChangeBus, InitializingBean, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PostgresChangeBus.class);
+    private static final String CHANNEL = "tenmo_changes";
+    // NOTIFY payloads must stay under 8000 bytes; every event type is a few ids and an amount
+    private static final Map<String, Class<?>> EVENT_TYPES = Map.of(
+            "transfer", TransferChangedEvent.class,
+            "user", UserChangedEvent.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int keepaliveMillis;
+    private final long reconnectMillis;
+    private final Thread listener;
+    private volatile boolean running = true;
+    private volatile boolean listening;
+    private volatile Connection listenConnection;
+
+    public PostgresChangeBus(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                             @Value("${spring.datasource.url}") String url,
+                             @Value("${spring.datasource.username}") String username,
+                             @Value("${spring.datasource.password}") String password,
+                             @Value("${change-bus.keepalive-seconds}") int keepaliveSeconds,
+                             @Value("${change-bus.reconnect-seconds}") long reconnectSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.keepaliveMillis = (int) TimeUnit.SECONDS.toMillis(keepaliveSeconds);
+        this.reconnectMillis = TimeUnit.SECONDS.toMillis(reconnectSeconds);
+        this.listener = new Thread(this::listen, "change-bus-listener");
+        listener.setDaemon(true);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        listener.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        // Closing the connection is what wakes a listener blocked waiting for notifications
+        closeQuietly(listenConnection);
+        listener.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Override
+    public void publish(Object event) {
+        publishAll(Collections.singletonList(event));
+    }
+
+    // One round trip however many events there are, so a batch write stays batched
+    @Override
+    public void publishAll(Collection<?> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<String> payloads = new ArrayList<>(events.size());
+        for (Object event : events) {
+            payloads.add(encode(event));
+        }
+        String sql = "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS payload;";
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setString(1, CHANNEL);
+                ps.setArray(2, con.createArrayOf("text", payloads.toArray()));
+                return ps;
+            }, (RowCallbackHandler) rs -> { });
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new DaoException("Unable to connect to server or database", e);
+        }
+        // Local listeners last, so a failed NOTIFY fails the write before anyone here has acted on it
+        events.forEach(eventPublisher::publishEvent);
+    }
+
+    private void listen() {
+        boolean missedChanges = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                listenConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                listening = true;
+                if (missedChanges) {
+                    eventPublisher.publishEvent(new ChangeBusResyncEvent());
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(keepaliveMillis);
+                    if (notifications == null || notifications.length == 0) {
+                        // A quiet channel looks the same as a dead connection, so prove the connection is still there
+                        try (Statement statement = connection.createStatement()) {
+                            statement.execute("SELECT 1");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    LOG.warn("Change bus connection lost, reconnecting in {} ms: {}", reconnectMillis, e.getMessage());
+                }
+            } finally {
+                listening = false;
+                listenConnection = null;
+            }
+            missedChanges = true;
+            try {
+                Thread.sleep(reconnectMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Listeners run on the listener thread, so they should hand anything slow to their own executor
+    private void dispatch(String payload) {
+        try {
+            Object event = decode(payload);
+            if (event != null) {
+                eventPublisher.publishEvent(event);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOG.warn("Dropping change bus message {}: {}", payload, e.getMessage());
+        }
+    }
+
+    private String encode(Object event) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("node", nodeId);
+        message.put("type", typeOf(event));
+        message.set("event", objectMapper.valueToTree(event));
+        return message.toString();
+    }
+
+    // Returns null for this node's own messages, which its listeners were given when they were published
+    private Object decode(String payload) throws JsonProcessingException {
+        JsonNode message = objectMapper.readTree(payload);
+        if (nodeId.equals(message.path("node").asText())) {
+            return null;
+        }
+        Class<?> eventType = EVENT_TYPES.get(message.path("type").asText());
+        if (eventType == null) {
+            throw new IllegalArgumentException("unknown event type");
+        }
+        return objectMapper.treeToValue(message.get("event"), eventType);
+    }
+
+    private static String typeOf(Object event) {
+        for (Map.Entry<String, Class<?>> eventType : EVENT_TYPES.entrySet()) {
+            if (eventType.getValue().isInstance(event)) {
+                return eventType.getKey();
+            }
+        }
+        throw new IllegalArgumentException("No change bus type for " + event.getClass().getName());
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.debug("Closing change bus connection: {}", e.getMessage());
+            }
+        }
+    }
+}
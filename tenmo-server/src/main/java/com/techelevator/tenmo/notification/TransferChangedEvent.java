@@ -0,0 +1,35 @@
+package com.techelevator.tenmo.notification;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.techelevator.tenmo.model.Transfer;
+
+/**
+ * Published by JdbcTransferDao when a transfer is created or changes status. Delivered to
+ * {@code @TransactionalEventListener}s only once the transaction that made the change commits, and dropped if it
+ * rolls back. Other nodes receive it through the {@link ChangeBus}.
+ */
+public class TransferChangedEvent {
+
+    public enum Change {
+        CREATED,
+        UPDATED
+    }
+
+    private final Change change;
+    private final Transfer transfer;
+
+    @JsonCreator
+    public TransferChangedEvent(@JsonProperty("change") Change change, @JsonProperty("transfer") Transfer transfer) {
+        this.change = change;
+        this.transfer = transfer;
+    }
+
+    public Change getChange() {
+        return change;
+    }
+
+    public Transfer getTransfer() {
+        return transfer;
+    }
+}
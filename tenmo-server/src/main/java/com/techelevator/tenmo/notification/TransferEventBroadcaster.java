@@ -0,0 +1,250 @@
+package com.techelevator.tenmo.notification;
+
+import com.techelevator.tenmo.exception.TransferExceptions;
+import com.techelevator.tenmo.model.Transfer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed transfer changes to the Server-Sent Event streams of both accounts involved. A stream is an async
+ * request, so an idle one holds no Tomcat thread. Each stream has its own bounded queue: publishing only offers the
+ * event to the queues and never writes, and a small pool of sender threads drains each queue in turn, one thread per
+ * stream at a time. A client that stops reading fills its queue and has its stream closed, so it can hold up at most
+ * one sender thread, until Tomcat's write timeout, rather than everyone's events. A separate thread queues a heartbeat
+ * comment on streams that have been idle, so dead connections are found without delaying events. Streams close
+ * after a timeout and the client reconnects. Events are not replayed, so a client re-reads whatever it shows after
+ * connecting; for the same reason every stream is closed when the change bus may have missed changes made on
+ * another node.
+ */
+@Component
+public class TransferEventBroadcaster implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransferEventBroadcaster.class);
+
+    private final Map<Integer, Set<EventStream>> streamsByAccount = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor sender;
+    private final ScheduledThreadPoolExecutor heartbeat;
+    private final Counter slowStreamsClosed;
+    private final long timeoutMillis;
+    private final long heartbeatNanos;
+    private final int maxStreamsPerAccount;
+    private final int queueCapacity;
+
+    public TransferEventBroadcaster(
+            @Value("${transfer-events.timeout-seconds}") long timeoutSeconds,
+            @Value("${transfer-events.heartbeat-seconds}") long heartbeatSeconds,
+            @Value("${transfer-events.max-streams-per-account}") int maxStreamsPerAccount,
+            @Value("${transfer-events.sender-threads}") int senderThreads,
+            @Value("${transfer-events.queue-capacity}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.heartbeatNanos = TimeUnit.SECONDS.toNanos(heartbeatSeconds);
+        this.maxStreamsPerAccount = maxStreamsPerAccount;
+        this.queueCapacity = queueCapacity;
+        // At most one drain task per stream is ever waiting, so this queue is bounded by the number of streams
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("transfer-events-"));
+        this.heartbeat = new ScheduledThreadPoolExecutor(1, daemonThreads("transfer-events-heartbeat-"));
+        heartbeat.scheduleWithFixedDelay(this::queueHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+
+        Gauge.builder("transfer.events.streams", streamsByAccount, TransferEventBroadcaster::countStreams)
+                .description("Open transfer event streams")
+                .register(meterRegistry);
+        this.slowStreamsClosed = Counter.builder("transfer.events.slow.closed")
+                .description("Event streams closed because the client fell too far behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream for the account. Throws EventStreamLimitException when the account already has the maximum
+     * number of streams open.
+     */
+    public SseEmitter subscribe(int accountId) {
+        EventStream stream = new EventStream(accountId, newEmitter(timeoutMillis), queueCapacity);
+        streamsByAccount.compute(accountId, (id, streams) -> {
+            if (streams == null) {
+                streams = new CopyOnWriteArraySet<>();
+            }
+            if (streams.size() >= maxStreamsPerAccount) {
+                throw new TransferExceptions.EventStreamLimitException(
+                        "Account ID " + accountId + " already has " + maxStreamsPerAccount + " event streams open");
+            }
+            streams.add(stream);
+            return streams;
+        });
+        stream.emitter.onCompletion(() -> unsubscribe(stream));
+        stream.emitter.onTimeout(() -> unsubscribe(stream));
+        stream.emitter.onError(e -> unsubscribe(stream));
+        // Commits the response headers as soon as the request goes async, so the client knows the stream is open
+        // before any event arrives
+        queue(stream, SseEmitter.event().comment("connected"));
+        return stream.emitter;
+    }
+
+    // Runs on the thread that committed the change, so it only queues; the sender threads do the writing
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransferChanged(TransferChangedEvent event) {
+        Transfer transfer = event.getTransfer();
+        queueAll(transfer.getAccountFrom(), event);
+        queueAll(transfer.getAccountTo(), event);
+    }
+
+    @EventListener
+    public void onResync(ChangeBusResyncEvent event) {
+        streamsByAccount.values().forEach(streams -> streams.forEach(this::close));
+    }
+
+    @Override
+    public void destroy() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        streamsByAccount.values().forEach(streams -> streams.forEach(stream -> stream.emitter.complete()));
+        streamsByAccount.clear();
+    }
+
+    protected SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void queueAll(int accountId, TransferChangedEvent event) {
+        Set<EventStream> streams = streamsByAccount.get(accountId);
+        if (streams != null) {
+            Transfer transfer = event.getTransfer();
+            for (EventStream stream : streams) {
+                // A builder can only be sent once, so each stream gets its own
+                queue(stream, SseEmitter.event()
+                        .id(String.valueOf(transfer.getTransferId()))
+                        .name(event.getChange().name().toLowerCase())
+                        .data(transfer, MediaType.APPLICATION_JSON));
+            }
+        }
+    }
+
+    // Events prove a stream is alive as well as a heartbeat does, so only streams that have gone quiet get one
+    private void queueHeartbeats() {
+        long now = System.nanoTime();
+        streamsByAccount.values().forEach(streams -> streams.forEach(stream -> {
+            if (stream.queue.isEmpty() && now - stream.lastSentNanos >= heartbeatNanos) {
+                queue(stream, SseEmitter.event().comment("heartbeat"));
+            }
+        }));
+    }
+
+    private void queue(EventStream stream, SseEmitter.SseEventBuilder event) {
+        if (stream.closed) {
+            return;
+        }
+        if (!stream.queue.offer(event)) {
+            LOG.debug("Closing event stream for account {}: {} events behind", stream.accountId, queueCapacity);
+            slowStreamsClosed.increment();
+            close(stream);
+            return;
+        }
+        scheduleDrain(stream);
+    }
+
+    private void scheduleDrain(EventStream stream) {
+        if (stream.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(stream));
+        }
+    }
+
+    // Only one thread drains a stream at a time, so its events go out in order and one stuck write holds one thread
+    private void drain(EventStream stream) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while (!stream.closed && (event = stream.queue.poll()) != null) {
+                send(stream, event);
+            }
+            if (stream.closed) {
+                // The emitter is completed here rather than by whoever closed the stream, since completing waits for
+                // any write in progress and closing must not
+                stream.emitter.complete();
+                return;
+            }
+            stream.draining.set(false);
+            // Anything queued or closed after the loop finished but before the flag was cleared found the stream
+            // still draining, so it is picked up here
+        } while ((stream.closed || !stream.queue.isEmpty()) && stream.draining.compareAndSet(false, true));
+    }
+
+    // A failed write means the client has gone; the container completes the emitter, and it stops getting events now
+    private void send(EventStream stream, SseEmitter.SseEventBuilder event) {
+        try {
+            stream.emitter.send(event);
+            stream.lastSentNanos = System.nanoTime();
+        } catch (IOException | IllegalStateException e) {
+            LOG.debug("Dropping event stream for account {}: {}", stream.accountId, e.getMessage());
+            stream.closed = true;
+            unsubscribe(stream);
+        }
+    }
+
+    private void close(EventStream stream) {
+        stream.closed = true;
+        unsubscribe(stream);
+        stream.queue.clear();
+        scheduleDrain(stream);
+    }
+
+    private void unsubscribe(EventStream stream) {
+        streamsByAccount.computeIfPresent(stream.accountId, (id, streams) -> {
+            streams.remove(stream);
+            return streams.isEmpty() ? null : streams;
+        });
+    }
+
+    private static int countStreams(Map<Integer, Set<EventStream>> streamsByAccount) {
+        return streamsByAccount.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class EventStream {
+
+        private final int accountId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long lastSentNanos = System.nanoTime();
+        private volatile boolean closed;
+
+        EventStream(int accountId, SseEmitter emitter, int queueCapacity) {
+            this.accountId = accountId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.techelevator.tenmo.notification;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Published by JdbcUserDao when a user is created, so every node drops what it has cached under that id and
+ * username.
+ */
+public class UserChangedEvent {
+
+    private final int userId;
+    private final String username;
+
+    @JsonCreator
+    public UserChangedEvent(@JsonProperty("userId") int userId, @JsonProperty("username") String username) {
+        this.userId = userId;
+        this.username = username;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
@@ -0,0 +1,99 @@
+package com.techelevator.tenmo.security;
+
+import com.techelevator.tenmo.exception.UserExceptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a CPU-heavy PasswordEncoder, such as BCrypt, on a fixed pool of worker threads with a bounded queue. At most
+ * that many hashes run at once, however many logins arrive, so a login burst cannot take all the CPU from other
+ * requests. Once the queue is full, further calls fail at once with PasswordHashingBusyException instead of waiting.
+ * Queue depth, active workers, hash time and rejections are published as password.hash.* metrics.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hash.queue", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes running now")
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("password.hash").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hash").tag("operation", "matches").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected")
+                .description("Password hashes refused because the queue was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> hash) {
+        Future<T> result;
+        try {
+            result = executor.submit(hash);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new UserExceptions.PasswordHashingBusyException("Too many logins in progress, try again shortly");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UserExceptions.PasswordHashingBusyException("Interrupted while waiting for a password hash");
+        } catch (ExecutionException e) {
+            // Rethrow what the delegate threw, e.g. IllegalArgumentException for a null password
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.techelevator.tenmo.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Provides the PasswordEncoder used by login and registration. It is declared here rather than in WebSecurityConfig
+ * because JdbcUserDao now depends on it, and WebSecurityConfig depends on JdbcUserDao through UserModelDetailsService.
+ */
+@Configuration
+public class PasswordHashingConfig {
+
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            @Value("${password-hashing.threads}") int threads,
+            @Value("${password-hashing.queue-capacity}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        // Leave at least half the cores to the rest of the API unless told otherwise
+        int workers = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), workers, queueCapacity, meterRegistry);
+    }
+}
@@ -0,0 +1,55 @@
+package com.techelevator.tenmo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A per-key token bucket kept in GCRA form: each bucket is a single AtomicLong holding the time at which it would be
+ * completely refilled, advanced by one emission interval per permit with a compare-and-set loop, so no lock is ever
+ * taken. Buckets not touched for the idle timeout are evicted; the timeout is never shorter than the time a bucket
+ * takes to refill, so an evicted bucket was already full and eviction cannot hand a client extra permits.
+ */
+public class RateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(double permitsPerSecond, int burst, long maximumBuckets, Duration idleTimeout) {
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = emissionIntervalNanos * burst;
+        long idleNanos = Math.max(idleTimeout.toNanos(), burstNanos);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumBuckets)
+                .expireAfterAccess(idleNanos, TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    /**
+     * Takes one permit from the key's bucket. Returns 0 if it was granted, otherwise the number of nanoseconds until
+     * a permit will be available; a refused call takes nothing from the bucket.
+     */
+    public long tryAcquire(String key) {
+        AtomicLong refilledAt = buckets.get(key, k -> new AtomicLong(System.nanoTime()));
+        long now = System.nanoTime();
+        while (true) {
+            long current = refilledAt.get();
+            long next = Math.max(current, now) + emissionIntervalNanos;
+            long overdraft = next - now - burstNanos;
+            if (overdraft > 0) {
+                return overdraft;
+            }
+            if (refilledAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long estimatedBuckets() {
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,74 @@
+package com.techelevator.tenmo.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Admission control for the API. Every request is sorted into an endpoint class with its own limits, set by
+ * rate-limit.&lt;class&gt;.permits-per-second and rate-limit.&lt;class&gt;.burst. Signed-in callers are limited
+ * per user id; login, register and refresh, and anyone without a token, are limited per client address.
+ */
+@Component
+public class RequestRateLimiter {
+
+    public enum EndpointClass {
+        READ, WRITE, LOGIN
+    }
+
+    private final Map<EndpointClass, RateLimiter> limiters = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+
+    public RequestRateLimiter(Environment environment, MeterRegistry meterRegistry) {
+        long maximumBuckets = environment.getRequiredProperty("rate-limit.buckets.maximum-size", Long.class);
+        Duration idleTimeout = Duration.ofSeconds(environment.getRequiredProperty("rate-limit.buckets.idle-seconds", Long.class));
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String prefix = "rate-limit." + endpointClass.name().toLowerCase() + ".";
+            RateLimiter limiter = new RateLimiter(
+                    environment.getRequiredProperty(prefix + "permits-per-second", Double.class),
+                    environment.getRequiredProperty(prefix + "burst", Integer.class),
+                    maximumBuckets, idleTimeout);
+            limiters.put(endpointClass, limiter);
+            String tag = endpointClass.name().toLowerCase();
+            rejections.put(endpointClass, Counter.builder("rate.limit.rejected").tag("class", tag)
+                    .description("Requests refused with 429").register(meterRegistry));
+            Gauge.builder("rate.limit.buckets", limiter, RateLimiter::estimatedBuckets).tag("class", tag)
+                    .description("Buckets held in memory").register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns 0 if the request may proceed, otherwise the nanoseconds the caller should wait before retrying.
+     */
+    public long tryAcquire(HttpServletRequest request, Authentication authentication) {
+        EndpointClass endpointClass = classify(request);
+        String key;
+        if (endpointClass != EndpointClass.LOGIN && authentication != null && authentication.getPrincipal() instanceof TenmoPrincipal) {
+            key = "user:" + ((TenmoPrincipal) authentication.getPrincipal()).getUserId();
+        } else {
+            key = "addr:" + request.getRemoteAddr();
+        }
+        long waitNanos = limiters.get(endpointClass).tryAcquire(key);
+        if (waitNanos > 0) {
+            rejections.get(endpointClass).increment();
+        }
+        return waitNanos;
+    }
+
+    private EndpointClass classify(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if ("/login".equals(path) || "/register".equals(path) || "/refresh".equals(path)) {
+            return EndpointClass.LOGIN;
+        }
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) ? EndpointClass.READ : EndpointClass.WRITE;
+    }
+}
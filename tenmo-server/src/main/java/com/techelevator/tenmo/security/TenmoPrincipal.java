@@ -0,0 +1,31 @@
+package com.techelevator.tenmo.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * The authenticated caller as rebuilt from the JWT on each request. Besides the username and authorities it carries
+ * the user id and primary account id that were signed into the token at login, so controllers can authorize a
+ * request and act on the caller's account without looking either up.
+ */
+public class TenmoPrincipal extends User {
+
+    private final int userId;
+    private final int accountId;
+
+    public TenmoPrincipal(String username, Collection<? extends GrantedAuthority> authorities, int userId, int accountId) {
+        super(username, "", authorities);
+        this.userId = userId;
+        this.accountId = accountId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+}
@@ -1,5 +1,6 @@
 package com.techelevator.tenmo.security.jwt;
 
+import com.techelevator.tenmo.security.RequestRateLimiter;
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.DefaultSecurityFilterChain;
@@ -8,14 +9,18 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class JWTConfigurer extends SecurityConfigurerAdapter<DefaultSecurityFilterChain, HttpSecurity> {
 
     private TokenProvider tokenProvider;
+    private RequestRateLimiter rateLimiter;
 
-    public JWTConfigurer(TokenProvider tokenProvider) {
+    public JWTConfigurer(TokenProvider tokenProvider, RequestRateLimiter rateLimiter) {
         this.tokenProvider = tokenProvider;
+        this.rateLimiter = rateLimiter;
     }
 
     @Override
     public void configure(HttpSecurity http) {
         JWTFilter customFilter = new JWTFilter(tokenProvider);
         http.addFilterBefore(customFilter, UsernamePasswordAuthenticationFilter.class);
+        // Limits are per user, so this has to run once JWTFilter has identified the caller
+        http.addFilterAfter(new RateLimitFilter(rateLimiter), JWTFilter.class);
     }
 }
\ No newline at end of file
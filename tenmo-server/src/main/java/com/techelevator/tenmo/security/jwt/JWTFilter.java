@@ -37,8 +37,8 @@ public class JWTFilter extends GenericFilterBean {
         String jwt = resolveToken(httpServletRequest);
         String requestURI = httpServletRequest.getRequestURI();
 
-        if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-            Authentication authentication = tokenProvider.getAuthentication(jwt);
+        Authentication authentication = StringUtils.hasText(jwt) ? tokenProvider.resolveAuthentication(jwt) : null;
+        if (authentication != null) {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             LOG.debug("set Authentication to com.techelevator.tenmo.security context for '{}', uri: {}", authentication.getName(), requestURI);
         } else {
@@ -0,0 +1,57 @@
+package com.techelevator.tenmo.security.jwt;
+
+import com.techelevator.tenmo.security.RequestRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs right after JWTFilter, so the caller is already known, and answers 429 with Retry-After once the caller has
+ * used up its allowance for the endpoint class. Refused requests never reach a controller or the database.
+ */
+public class RateLimitFilter extends GenericFilterBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final RequestRateLimiter rateLimiter;
+
+    public RateLimitFilter(RequestRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
+        // Async and error dispatches, such as an event stream closing or the container rendering an error page,
+        // finish a request that was already counted
+        if (httpServletRequest.getDispatcherType() != DispatcherType.REQUEST) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+        long waitNanos = rateLimiter.tryAcquire(httpServletRequest, SecurityContextHolder.getContext().getAuthentication());
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            LOG.debug("rate limit exceeded, uri: {}", httpServletRequest.getRequestURI());
+            HttpServletResponse httpServletResponse = (HttpServletResponse) servletResponse;
+            httpServletResponse.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            httpServletResponse.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests");
+            return;
+        }
+
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+}
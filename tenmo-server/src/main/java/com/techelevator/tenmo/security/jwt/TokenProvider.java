@@ -1,5 +1,9 @@
 package com.techelevator.tenmo.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.techelevator.tenmo.security.TenmoPrincipal;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -11,11 +15,11 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
@@ -24,37 +28,48 @@ public class TokenProvider implements InitializingBean {
     private final Logger log = LoggerFactory.getLogger(TokenProvider.class);
 
     private static final String AUTHORITIES_KEY = "auth";
+    private static final String USER_ID_KEY = "uid";
+    private static final String ACCOUNT_ID_KEY = "aid";
+    private static final String TOKEN_TYPE_KEY = "typ";
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
 
     private final String base64Secret;
     private final long tokenValidityInMilliseconds;
     private final long tokenValidityInMillisecondsForRememberMe;
+    private final long refreshTokenValidityInMilliseconds;
+
+    // Tokens whose signature has already been checked, each dropped when the token itself expires
+    private final Cache<String, VerifiedToken> verifiedTokens;
 
     private Key key;
+    private JwtParser jwtParser;
 
 
     public TokenProvider(
             @Value("${jwt.base64-secret}") String base64Secret,
             @Value("${jwt.token-validity-in-seconds}") long tokenValidityInSeconds,
-            @Value("${jwt.token-validity-in-seconds-for-remember-me}") long tokenValidityInSecondsForRememberMe) {
+            @Value("${jwt.token-validity-in-seconds-for-remember-me}") long tokenValidityInSecondsForRememberMe,
+            @Value("${jwt.refresh-token-validity-in-seconds}") long refreshTokenValidityInSeconds,
+            @Value("${jwt.verified-token-cache.maximum-size}") long verifiedTokenCacheSize) {
         this.base64Secret = base64Secret;
         this.tokenValidityInMilliseconds = tokenValidityInSeconds * 1000;
         this.tokenValidityInMillisecondsForRememberMe = tokenValidityInSecondsForRememberMe * 1000;
+        this.refreshTokenValidityInMilliseconds = refreshTokenValidityInSeconds * 1000;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedTokenCacheSize)
+                .expireAfter(new VerifiedTokenExpiry())
+                .build();
     }
 
     @Override
     public void afterPropertiesSet() {
         byte[] keyBytes = Decoders.BASE64.decode(base64Secret);
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
     }
 
-    public String createToken(Authentication authentication, boolean rememberMe) {
-        List<String> authoritiesList = new ArrayList<>();
-        Collection<? extends GrantedAuthority> authoritiesCollection = authentication.getAuthorities();
-        for (GrantedAuthority ga : authoritiesCollection) {
-            authoritiesList.add(ga.getAuthority());
-        }
-
-        String authorities = String.join(",", authoritiesList);
+    public String createToken(Authentication authentication, int userId, int accountId, boolean rememberMe) {
+        String authorities = joinAuthorities(authentication);
 
         long now = (new Date()).getTime();
         Date validity;
@@ -67,32 +82,88 @@ public class TokenProvider implements InitializingBean {
         return Jwts.builder()
                 .setSubject(authentication.getName())
                 .claim(AUTHORITIES_KEY, authorities)
+                .claim(USER_ID_KEY, userId)
+                .claim(ACCOUNT_ID_KEY, accountId)
                 .signWith(key, SignatureAlgorithm.HS512)
                 .setExpiration(validity)
                 .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Creates a long-lived token that can only be traded for new access tokens at the refresh endpoint. It carries
+     * the same identity claims as an access token, so a refresh needs no password check; the refresh endpoint still
+     * looks the user up by ID, to reject tokens of deleted users and return the user in the response.
+     */
+    public String createRefreshToken(Authentication authentication, int userId, int accountId) {
+        Date validity = new Date(System.currentTimeMillis() + refreshTokenValidityInMilliseconds);
 
-        Collection<? extends GrantedAuthority> authorities =
-                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
+        return Jwts.builder()
+                .setSubject(authentication.getName())
+                .claim(AUTHORITIES_KEY, joinAuthorities(authentication))
+                .claim(USER_ID_KEY, userId)
+                .claim(ACCOUNT_ID_KEY, accountId)
+                .claim(TOKEN_TYPE_KEY, REFRESH_TOKEN_TYPE)
+                .signWith(key, SignatureAlgorithm.HS512)
+                .setExpiration(validity)
+                .compact();
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    public long getTokenValidityInSeconds() {
+        return tokenValidityInMilliseconds / 1000;
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    /**
+     * Verifies the token and builds its Authentication in a single parse, or returns null if the token is not valid.
+     * The result is cached until the token expires, so a client that reuses its token costs one signature check in
+     * total instead of two per request.
+     */
+    public Authentication resolveAuthentication(String token) {
+        VerifiedToken verified = verifiedTokens.getIfPresent(token);
+        if (verified != null && verified.expiresAtMillis > System.currentTimeMillis()) {
+            return verified.authentication;
+        }
+        Claims claims = parseClaims(token);
+        if (claims == null) {
+            return null;
+        }
+        if (isRefreshToken(claims)) {
+            log.info("Refresh token used as an access token.");
+            return null;
+        }
+        Authentication authentication = buildAuthentication(claims, token);
+        if (authentication == null) {
+            return null;
+        }
+        long expiresAtMillis = claims.getExpiration() != null
+                ? claims.getExpiration().getTime()
+                : System.currentTimeMillis() + tokenValidityInMilliseconds;
+        verifiedTokens.put(token, new VerifiedToken(authentication, expiresAtMillis));
+        return authentication;
+    }
+
+    /**
+     * Verifies a refresh token and builds the Authentication it stands for, or returns null if the token is not a
+     * valid refresh token. Refreshes are rare next to API calls, so the result is not cached.
+     */
+    public Authentication resolveRefreshAuthentication(String token) {
+        Claims claims = parseClaims(token);
+        if (claims == null || !isRefreshToken(claims)) {
+            return null;
+        }
+        return buildAuthentication(claims, token);
+    }
+
+    public Authentication getAuthentication(String token) {
+        return buildAuthentication(jwtParser.parseClaimsJws(token).getBody(), token);
     }
 
     public boolean validateToken(String authToken) {
+        return parseClaims(authToken) != null;
+    }
+
+    private Claims parseClaims(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (io.jsonwebtoken.security.SecurityException | MalformedJwtException e) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
@@ -106,6 +177,65 @@ public class TokenProvider implements InitializingBean {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
-        return false;
+        return null;
+    }
+
+    private boolean isRefreshToken(Claims claims) {
+        return REFRESH_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_KEY, String.class));
+    }
+
+    private String joinAuthorities(Authentication authentication) {
+        List<String> authoritiesList = new ArrayList<>();
+        Collection<? extends GrantedAuthority> authoritiesCollection = authentication.getAuthorities();
+        for (GrantedAuthority ga : authoritiesCollection) {
+            authoritiesList.add(ga.getAuthority());
+        }
+        return String.join(",", authoritiesList);
+    }
+
+    // Returns null for tokens issued without the identity claims
+    private Authentication buildAuthentication(Claims claims, String token) {
+        Integer userId = claims.get(USER_ID_KEY, Integer.class);
+        Integer accountId = claims.get(ACCOUNT_ID_KEY, Integer.class);
+        if (userId == null || accountId == null) {
+            log.info("JWT token is missing identity claims.");
+            return null;
+        }
+
+        Collection<? extends GrantedAuthority> authorities =
+                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                        .map(SimpleGrantedAuthority::new)
+                        .collect(Collectors.toList());
+
+        TenmoPrincipal principal = new TenmoPrincipal(claims.getSubject(), authorities, userId, accountId);
+
+        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    }
+
+    private static class VerifiedToken {
+        private final Authentication authentication;
+        private final long expiresAtMillis;
+
+        private VerifiedToken(Authentication authentication, long expiresAtMillis) {
+            this.authentication = authentication;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static class VerifiedTokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verified.expiresAtMillis - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, verified, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
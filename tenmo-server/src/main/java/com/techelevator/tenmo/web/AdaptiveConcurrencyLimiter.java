@@ -0,0 +1,81 @@
+package com.techelevator.tenmo.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps how many requests may be in flight, adjusting the cap with AIMD. Each request that completes while no thread
+ * is waiting for a database connection raises the limit by 1/limit, about one per full window. Each request that
+ * completes while threads are queued at the pool, or slower than the target latency, cuts the limit by the backoff
+ * ratio, at most once per target latency: the requests finishing just after a cut were admitted under the old limit,
+ * so their overload says nothing new about the new one. A slow database therefore shrinks the window by one step per
+ * latency window, and the surplus is refused at once instead of queueing on the pool.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long targetLatencyNanos;
+    private final IntSupplier poolWaiters;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private double limit;
+    private long nextBackoffNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long targetLatencyNanos,
+                                      IntSupplier poolWaiters) {
+        this(initialLimit, minLimit, maxLimit, backoffRatio, targetLatencyNanos, poolWaiters, System::nanoTime);
+    }
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long targetLatencyNanos,
+                                      IntSupplier poolWaiters, LongSupplier nanoClock) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.poolWaiters = poolWaiters;
+        this.nanoClock = nanoClock;
+        this.nextBackoffNanos = nanoClock.getAsLong();
+    }
+
+    // Admits the request if the window has room; every admitted request must be released exactly once
+    public boolean tryAcquire() {
+        int limitNow = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limitNow) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        boolean overloaded = poolWaiters.getAsInt() > 0 || latencyNanos > targetLatencyNanos;
+        synchronized (this) {
+            if (overloaded) {
+                long now = nanoClock.getAsLong();
+                if (now - nextBackoffNanos >= 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    nextBackoffNanos = now + targetLatencyNanos;
+                }
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,54 @@
+package com.techelevator.tenmo.web;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts the load-shedding interceptor in front of every /user endpoint, which covers AccountController,
+ * TransferController and UserController. Login and register have their own limits and are left alone, and so are
+ * transfer event streams, which stay open for minutes without doing work and would otherwise hold a slot throughout,
+ * and the ledger export, whose run time grows with the ledger and would read as overload on every call.
+ */
+@Configuration
+public class LoadSheddingConfig implements WebMvcConfigurer {
+
+    private final LoadSheddingInterceptor interceptor;
+
+    public LoadSheddingConfig(
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${load-shedding.initial-limit}") int initialLimit,
+            @Value("${load-shedding.min-limit}") int minLimit,
+            @Value("${load-shedding.max-limit}") int maxLimit,
+            @Value("${load-shedding.backoff-ratio}") double backoffRatio,
+            @Value("${load-shedding.target-latency-millis}") long targetLatencyMillis,
+            @Value("${load-shedding.retry-after-seconds}") long retryAfterSeconds) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio,
+                TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis), () -> threadsAwaitingConnection(dataSource));
+        this.interceptor = new LoadSheddingInterceptor(limiter, retryAfterSeconds, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor).addPathPatterns("/user/**").excludePathPatterns("/user/*/transfer/events", "/user/all/transfer/export");
+    }
+
+    // The pool is created on first use, so there is nothing to read until then
+    private static int threadsAwaitingConnection(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null) {
+                return pool.getThreadsAwaitingConnection();
+            }
+        }
+        return 0;
+    }
+}
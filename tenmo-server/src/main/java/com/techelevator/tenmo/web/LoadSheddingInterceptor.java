@@ -0,0 +1,61 @@
+package com.techelevator.tenmo.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sheds load in front of the DAO-backed controllers. A request is only let through while the adaptive limiter has
+ * room; otherwise it gets 503 with Retry-After straight away, without taking a Tomcat thread to the connection pool.
+ */
+public class LoadSheddingInterceptor implements HandlerInterceptor {
+
+    private static final String STARTED_AT_ATTRIBUTE = LoadSheddingInterceptor.class.getName() + ".startedAt";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long retryAfterSeconds;
+    private final Counter rejected;
+
+    public LoadSheddingInterceptor(AdaptiveConcurrencyLimiter limiter, long retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = retryAfterSeconds;
+        Gauge.builder("load.shedding.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Requests allowed in flight").register(meterRegistry);
+        Gauge.builder("load.shedding.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Requests in flight").register(meterRegistry);
+        this.rejected = Counter.builder("load.shedding.rejected")
+                .description("Requests refused with 503").register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // An async dispatch continues a request that was admitted on its first dispatch
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy");
+            return false;
+        }
+        request.setAttribute(STARTED_AT_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object startedAt = request.getAttribute(STARTED_AT_ATTRIBUTE);
+        if (startedAt != null) {
+            request.removeAttribute(STARTED_AT_ATTRIBUTE);
+            limiter.release(System.nanoTime() - (Long) startedAt);
+        }
+    }
+}
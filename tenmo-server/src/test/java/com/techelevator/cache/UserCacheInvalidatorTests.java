@@ -0,0 +1,63 @@
+package com.techelevator.cache;
+
+import com.techelevator.tenmo.cache.UserCacheInvalidator;
+import com.techelevator.tenmo.dao.JdbcUserDao;
+import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.notification.ChangeBusResyncEvent;
+import com.techelevator.tenmo.notification.UserChangedEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+public class UserCacheInvalidatorTests {
+
+    private static final User USER_1 = new User(1001, "user1", "user1", "USER");
+    private static final User USER_2 = new User(1002, "user2", "user2", "USER");
+
+    private Cache usersById;
+    private Cache usersByUsername;
+    private UserCacheInvalidator sut;
+
+    @Before
+    public void setup() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+                JdbcUserDao.USERS_BY_ID_CACHE, JdbcUserDao.USERS_BY_USERNAME_CACHE);
+        usersById = cacheManager.getCache(JdbcUserDao.USERS_BY_ID_CACHE);
+        usersByUsername = cacheManager.getCache(JdbcUserDao.USERS_BY_USERNAME_CACHE);
+        sut = new UserCacheInvalidator(cacheManager);
+
+        usersById.put(1001, USER_1);
+        usersById.put(1002, USER_2);
+        usersByUsername.put("user1", USER_1);
+        usersByUsername.put("user2", USER_2);
+    }
+
+    @Test
+    public void onUserChanged_evicts_only_that_user_from_both_caches() {
+        sut.onUserChanged(new UserChangedEvent(1001, "user1"));
+
+        Assert.assertNull(usersById.get(1001));
+        Assert.assertNull(usersByUsername.get("user1"));
+        Assert.assertNotNull(usersById.get(1002));
+        Assert.assertNotNull(usersByUsername.get("user2"));
+    }
+
+    @Test
+    public void onUserChanged_evicts_the_normalised_username() {
+        sut.onUserChanged(new UserChangedEvent(1001, " User1 "));
+
+        Assert.assertNull(usersByUsername.get("user1"));
+    }
+
+    @Test
+    public void onResync_clears_both_caches() {
+        sut.onResync(new ChangeBusResyncEvent());
+
+        Assert.assertNull(usersById.get(1001));
+        Assert.assertNull(usersById.get(1002));
+        Assert.assertNull(usersByUsername.get("user1"));
+        Assert.assertNull(usersByUsername.get("user2"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.techelevator.dao;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JdbcTemplate that runs EXPLAIN for every query a DAO issues before executing it, so tests can assert on the plans
+ * the DAOs actually get instead of on copies of their SQL.
+ */
+public class ExplainingJdbcTemplate extends JdbcTemplate {
+
+    private final Map<String, String> plans = new LinkedHashMap<>();
+
+    public ExplainingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) throws DataAccessException {
+        if (psc instanceof SqlProvider) {
+            String sql = ((SqlProvider) psc).getSql();
+            String plan = super.query(con -> con.prepareStatement("EXPLAIN " + sql), pss, rs -> {
+                List<String> lines = new ArrayList<>();
+                while (rs.next()) {
+                    lines.add(rs.getString(1));
+                }
+                return String.join("\n", lines);
+            });
+            plans.put(sql, plan);
+        }
+        return super.query(psc, pss, rse);
+    }
+
+    public Map<String, String> getPlans() {
+        return plans;
+    }
+
+    public void clearPlans() {
+        plans.clear();
+    }
+}
@@ -0,0 +1,61 @@
+package com.techelevator.dao;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.exception.AccountExceptions;
+import com.techelevator.tenmo.model.Account;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class JdbcAccountDaoTests extends BaseDaoTests {
+    protected static final Account ACCOUNT_1 = new Account(2001, 1001, new BigDecimal("1000.00"));
+    protected static final Account ACCOUNT_2 = new Account(2002, 1002, new BigDecimal("1000.00"));
+
+    private ExplainingJdbcTemplate jdbcTemplate;
+    private JdbcAccountDao sut;
+
+    @Before
+    public void setup() {
+        jdbcTemplate = new ExplainingJdbcTemplate(dataSource);
+        sut = new JdbcAccountDao(jdbcTemplate);
+    }
+
+    @Test
+    public void getAccountByUserId_given_valid_user_id_returns_account() {
+        Account actualAccount = sut.getAccountByUserId(ACCOUNT_2.getUser_id());
+
+        assertAccountsMatch(ACCOUNT_2, actualAccount);
+    }
+
+    @Test(expected = AccountExceptions.AccountNotFoundException.class)
+    public void getAccountByUserId_given_invalid_user_id_throws_exception() {
+        sut.getAccountByUserId(-1);
+    }
+
+    @Test
+    public void getAccountByUserId_probes_user_id_index() {
+        // With sequential scans priced out the planner only avoids one if a usable index exists
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+
+        sut.getAccountByUserId(ACCOUNT_1.getUser_id());
+
+        for (String plan : jdbcTemplate.getPlans().values()) {
+            Assert.assertTrue(plan, plan.contains("ix_account_user_id"));
+        }
+    }
+
+    @Test
+    public void getAccountObjByAccountId_given_valid_account_id_returns_account() {
+        Account actualAccount = sut.getAccountObjByAccountId(ACCOUNT_1.getUser_id(), ACCOUNT_1.getAccount_id());
+
+        assertAccountsMatch(ACCOUNT_1, actualAccount);
+    }
+
+    private void assertAccountsMatch(Account expected, Account actual) {
+        Assert.assertEquals(expected.getAccount_id(), actual.getAccount_id());
+        Assert.assertEquals(expected.getUser_id(), actual.getUser_id());
+        Assert.assertEquals(0, expected.getBalance().compareTo(actual.getBalance()));
+    }
+}
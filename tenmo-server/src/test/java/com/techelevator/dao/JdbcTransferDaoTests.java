@@ -0,0 +1,381 @@
+package com.techelevator.dao;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.exception.AccountExceptions;
+import com.techelevator.tenmo.exception.TransferExceptions;
+import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.model.TransferBatchResultDto;
+import com.techelevator.tenmo.model.TransferDetailDto;
+import com.techelevator.tenmo.model.TransferDetailPageDto;
+import com.techelevator.tenmo.model.TransferPageDto;
+import com.techelevator.tenmo.notification.TransferChangedEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class JdbcTransferDaoTests extends BaseDaoTests {
+
+    private JdbcAccountDao accountDao;
+    private JdbcTransferDao sut;
+    private final List<Object> publishedEvents = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        accountDao = new JdbcAccountDao(jdbcTemplate);
+        sut = new JdbcTransferDao(jdbcTemplate, accountDao, publishedEvents::add);
+    }
+
+    @Test
+    public void sendTransfer_moves_funds_and_records_approved_send() {
+        Transfer sent = sut.sendTransfer(1001, 2001, makeTransfer(2002, "125.50"), null);
+
+        Assert.assertTrue(sent.getTransferId() > 0);
+        Assert.assertEquals(2, sent.getTransferTypeId());
+        Assert.assertEquals(2, sent.getTransferStatusId());
+        Assert.assertEquals(2001, sent.getAccountFrom());
+        assertBalance(2001, "874.50");
+        assertBalance(2002, "1125.50");
+
+        Transfer stored = sut.getTransferByOnlyTransferId(sent.getTransferId());
+        Assert.assertEquals(0, new BigDecimal("125.50").compareTo(stored.getAmount()));
+    }
+
+    @Test
+    public void sendTransfer_with_insufficient_funds_leaves_balances_unchanged() {
+        try {
+            sut.sendTransfer(1001, 2001, makeTransfer(2002, "1000.01"), null);
+            Assert.fail("Expected InsufficientFundsException");
+        } catch (AccountExceptions.InsufficientFundsException e) {
+            assertBalance(2001, "1000.00");
+            assertBalance(2002, "1000.00");
+        }
+    }
+
+    @Test(expected = TransferExceptions.TransferCreationException.class)
+    public void sendTransfer_to_own_account_throws_exception() {
+        sut.sendTransfer(1001, 2001, makeTransfer(2001, "10.00"), null);
+    }
+
+    @Test(expected = TransferExceptions.TransferCreationException.class)
+    public void sendTransfer_with_non_positive_amount_throws_exception() {
+        sut.sendTransfer(1001, 2001, makeTransfer(2002, "0.00"), null);
+    }
+
+    @Test(expected = AccountExceptions.AccountNotFoundException.class)
+    public void sendTransfer_to_unknown_account_throws_exception() {
+        sut.sendTransfer(1001, 2001, makeTransfer(9999, "10.00"), null);
+    }
+
+    @Test
+    public void sendTransfer_retried_with_same_idempotency_key_moves_funds_once() {
+        Transfer first = sut.sendTransfer(1001, 2001, makeTransfer(2002, "40.00"), "key-1");
+        Transfer retry = sut.sendTransfer(1001, 2001, makeTransfer(2002, "40.00"), "key-1");
+
+        Assert.assertEquals(first.getTransferId(), retry.getTransferId());
+        assertBalance(2001, "960.00");
+        assertBalance(2002, "1040.00");
+    }
+
+    @Test
+    public void createTransfer_retried_with_same_idempotency_key_returns_original() {
+        Transfer request = makeTransfer(2002, "15.00");
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(2001);
+
+        Transfer first = sut.createTransfer(1002, request, "key-2");
+        Transfer retry = sut.createTransfer(1002, request, "key-2");
+
+        Assert.assertEquals(first.getTransferId(), retry.getTransferId());
+        Assert.assertEquals(1, sut.getTransferHistoryPageByUserId(1002, null, 10).getTransfers().size());
+    }
+
+    @Test
+    public void createTransfer_with_key_another_user_used_creates_a_new_transfer() {
+        Transfer sent = sut.sendTransfer(1001, 2001, makeTransfer(2002, "40.00"), "shared-key");
+        Transfer request = makeTransfer(2002, "15.00");
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(2001);
+
+        Transfer created = sut.createTransfer(1002, request, "shared-key");
+
+        Assert.assertNotEquals(sent.getTransferId(), created.getTransferId());
+        Assert.assertEquals(1, created.getTransferStatusId());
+    }
+
+    @Test
+    public void sendTransfer_with_counterpartys_key_does_not_replay_their_transfer() {
+        Transfer sent = sut.sendTransfer(1001, 2001, makeTransfer(2002, "40.00"), "key-4");
+
+        Transfer replayed = sut.sendTransfer(1002, 2002, makeTransfer(2001, "5.00"), "key-4");
+
+        Assert.assertNotEquals(sent.getTransferId(), replayed.getTransferId());
+        Assert.assertEquals(2002, replayed.getAccountFrom());
+        assertBalance(2001, "965.00");
+        assertBalance(2002, "1035.00");
+    }
+
+    @Test
+    public void createTransfer_publishes_created_event_only_for_new_transfers() {
+        Transfer request = makeTransfer(2002, "15.00");
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(2001);
+
+        Transfer created = sut.createTransfer(1002, request, "key-3");
+        sut.createTransfer(1002, request, "key-3");
+
+        Assert.assertEquals(1, publishedEvents.size());
+        TransferChangedEvent event = (TransferChangedEvent) publishedEvents.get(0);
+        Assert.assertEquals(TransferChangedEvent.Change.CREATED, event.getChange());
+        Assert.assertEquals(created.getTransferId(), event.getTransfer().getTransferId());
+    }
+
+    @Test
+    public void approveTransfer_publishes_updated_event_with_new_status() {
+        Transfer request = createRequest(2001, 2002, "25.00");
+        publishedEvents.clear();
+
+        sut.approveTransfer(1001, request.getTransferId());
+
+        Assert.assertEquals(1, publishedEvents.size());
+        TransferChangedEvent event = (TransferChangedEvent) publishedEvents.get(0);
+        Assert.assertEquals(TransferChangedEvent.Change.UPDATED, event.getChange());
+        Assert.assertEquals(2, event.getTransfer().getTransferStatusId());
+    }
+
+    @Test
+    public void approveTransfer_pays_request_and_marks_it_approved() {
+        Transfer request = createRequest(2001, 2002, "250.00");
+
+        Transfer approved = sut.approveTransfer(1001, request.getTransferId());
+
+        Assert.assertEquals(2, approved.getTransferStatusId());
+        Assert.assertEquals(2, sut.getTransferByOnlyTransferId(request.getTransferId()).getTransferStatusId());
+        assertBalance(2001, "750.00");
+        assertBalance(2002, "1250.00");
+    }
+
+    @Test
+    public void approveTransfer_twice_pays_only_once() {
+        Transfer request = createRequest(2001, 2002, "250.00");
+        sut.approveTransfer(1001, request.getTransferId());
+
+        try {
+            sut.approveTransfer(1001, request.getTransferId());
+            Assert.fail("Expected TransferUpdateException");
+        } catch (TransferExceptions.TransferUpdateException e) {
+            assertBalance(2001, "750.00");
+            assertBalance(2002, "1250.00");
+        }
+    }
+
+    @Test(expected = TransferExceptions.TransferUpdateException.class)
+    public void approveTransfer_by_requester_throws_exception() {
+        Transfer request = createRequest(2001, 2002, "250.00");
+
+        sut.approveTransfer(1002, request.getTransferId());
+    }
+
+    @Test(expected = AccountExceptions.InsufficientFundsException.class)
+    public void approveTransfer_with_insufficient_funds_throws_exception() {
+        Transfer request = createRequest(2001, 2002, "1500.00");
+
+        sut.approveTransfer(1001, request.getTransferId());
+    }
+
+    @Test
+    public void rejectTransfer_marks_rejected_without_moving_funds() {
+        Transfer request = createRequest(2001, 2002, "250.00");
+
+        Transfer rejected = sut.rejectTransfer(1001, request.getTransferId());
+
+        Assert.assertEquals(3, rejected.getTransferStatusId());
+        assertBalance(2001, "1000.00");
+        assertBalance(2002, "1000.00");
+    }
+
+    @Test(expected = TransferExceptions.TransferUpdateException.class)
+    public void approveTransfer_after_reject_throws_exception() {
+        Transfer request = createRequest(2001, 2002, "250.00");
+        sut.rejectTransfer(1001, request.getTransferId());
+
+        sut.approveTransfer(1001, request.getTransferId());
+    }
+
+    @Test
+    public void getTransferHistoryPageByUserId_pages_newest_first_without_gaps() {
+        Transfer first = sut.sendTransfer(1001, 2001, makeTransfer(2002, "1.00"), null);
+        Transfer second = sut.sendTransfer(1002, 2002, makeTransfer(2001, "2.00"), null);
+        Transfer third = sut.sendTransfer(1001, 2001, makeTransfer(2003, "3.00"), null);
+        sut.sendTransfer(1002, 2002, makeTransfer(2003, "4.00"), null);
+
+        TransferPageDto page = sut.getTransferHistoryPageByUserId(1001, null, 2);
+        Assert.assertEquals(2, page.getTransfers().size());
+        Assert.assertEquals(third.getTransferId(), page.getTransfers().get(0).getTransferId());
+        Assert.assertEquals(second.getTransferId(), page.getTransfers().get(1).getTransferId());
+        Assert.assertEquals(Integer.valueOf(second.getTransferId()), page.getNextCursor());
+
+        page = sut.getTransferHistoryPageByUserId(1001, page.getNextCursor(), 2);
+        Assert.assertEquals(1, page.getTransfers().size());
+        Assert.assertEquals(first.getTransferId(), page.getTransfers().get(0).getTransferId());
+        Assert.assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void getTransferHistoryPageByUserId_with_no_transfers_returns_empty_page() {
+        TransferPageDto page = sut.getTransferHistoryPageByUserId(1003, null, 10);
+
+        Assert.assertTrue(page.getTransfers().isEmpty());
+        Assert.assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void getTransferDetailPageByUserId_fills_in_names_and_descriptions() {
+        Transfer request = createRequest(2001, 2002, "20.00");
+        Transfer sent = sut.sendTransfer(1001, 2001, makeTransfer(2003, "5.00"), null);
+        sut.sendTransfer(1001, 2001, makeTransfer(2002, "1.00"), null);
+
+        TransferDetailPageDto page = sut.getTransferDetailPageByUserId(1001, null, 2);
+
+        Assert.assertEquals(2, page.getTransfers().size());
+        Assert.assertEquals(Integer.valueOf(sent.getTransferId()), page.getNextCursor());
+        TransferDetailDto older = page.getTransfers().get(1);
+        Assert.assertEquals(sent.getTransferId(), older.getTransferId());
+        Assert.assertEquals("Send", older.getTransferType());
+        Assert.assertEquals("Approved", older.getTransferStatus());
+        Assert.assertEquals("user1", older.getUsernameFrom());
+        Assert.assertEquals("user3", older.getUsernameTo());
+
+        TransferDetailPageDto lastPage = sut.getTransferDetailPageByUserId(1001, page.getNextCursor(), 2);
+        Assert.assertEquals(1, lastPage.getTransfers().size());
+        Assert.assertEquals(request.getTransferId(), lastPage.getTransfers().get(0).getTransferId());
+        Assert.assertEquals("Pending", lastPage.getTransfers().get(0).getTransferStatus());
+        Assert.assertNull(lastPage.getNextCursor());
+    }
+
+    @Test(expected = TransferExceptions.TransferNotFoundException.class)
+    public void getTransferDetailByTransferId_for_uninvolved_user_throws_exception() {
+        Transfer request = createRequest(2001, 2002, "20.00");
+
+        sut.getTransferDetailByTransferId(1003, request.getTransferId());
+    }
+
+    @Test
+    public void streamAllTransfers_visits_every_transfer_in_id_order() {
+        Transfer first = sut.sendTransfer(1001, 2001, makeTransfer(2002, "1.00"), null);
+        Transfer second = createRequest(2003, 2001, "2.00");
+
+        List<Transfer> streamed = new ArrayList<>();
+        sut.streamAllTransfers(streamed::add);
+
+        Assert.assertEquals(2, streamed.size());
+        Assert.assertEquals(first.getTransferId(), streamed.get(0).getTransferId());
+        Assert.assertEquals(second.getTransferId(), streamed.get(1).getTransferId());
+        Assert.assertEquals(0, new BigDecimal("2.00").compareTo(streamed.get(1).getAmount()));
+    }
+
+    @Test
+    public void sendTransferBatch_saves_every_item_and_moves_the_totals() {
+        TransferBatchResultDto result = sut.sendTransferBatch(1001, 2001, Arrays.asList(
+                makeTransfer(2002, "100.00"), makeTransfer(2003, "50.00"), makeTransfer(2002, "25.00")), null);
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertTrue(result.getErrors().isEmpty());
+        Assert.assertEquals(3, result.getTransfers().size());
+        for (Transfer transfer : result.getTransfers()) {
+            Assert.assertEquals(transfer.getAmount(), sut.getTransferByOnlyTransferId(transfer.getTransferId()).getAmount());
+        }
+        assertBalance(2001, "825.00");
+        assertBalance(2002, "1125.00");
+        assertBalance(2003, "1050.00");
+    }
+
+    @Test
+    public void sendTransferBatch_with_invalid_items_saves_nothing_and_reports_each() {
+        TransferBatchResultDto result = sut.sendTransferBatch(1001, 2001, Arrays.asList(
+                makeTransfer(2002, "10.00"), makeTransfer(2001, "10.00"), makeTransfer(9999, "10.00"),
+                makeTransfer(2003, "0.00"), makeTransfer(2003, "995.00")), null);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertTrue(result.getTransfers().isEmpty());
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), new ArrayList<>(result.getErrors().keySet()));
+        assertBalance(2001, "1000.00");
+        assertBalance(2002, "1000.00");
+    }
+
+    @Test
+    public void sendTransferBatch_with_null_item_reports_it_without_saving() {
+        TransferBatchResultDto result = sut.sendTransferBatch(1001, 2001, Arrays.asList(
+                makeTransfer(2002, "10.00"), null), null);
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(Arrays.asList(1), new ArrayList<>(result.getErrors().keySet()));
+        assertBalance(2001, "1000.00");
+    }
+
+    @Test
+    public void sendTransferBatch_retried_with_same_idempotency_key_pays_once_and_returns_the_batch() {
+        TransferBatchResultDto first = sut.sendTransferBatch(1001, 2001, Arrays.asList(
+                makeTransfer(2002, "100.00"), makeTransfer(2003, "50.00")), "batch-1");
+        TransferBatchResultDto retry = sut.sendTransferBatch(1001, 2001, Arrays.asList(
+                makeTransfer(2002, "100.00"), makeTransfer(2003, "50.00")), "batch-1");
+
+        Assert.assertTrue(retry.isCommitted());
+        Assert.assertEquals(2, retry.getTransfers().size());
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals(first.getTransfers().get(i).getTransferId(), retry.getTransfers().get(i).getTransferId());
+            Assert.assertEquals(first.getTransfers().get(i).getAccountTo(), retry.getTransfers().get(i).getAccountTo());
+        }
+        assertBalance(2001, "850.00");
+        assertBalance(2002, "1100.00");
+        assertBalance(2003, "1050.00");
+    }
+
+    @Test
+    public void sendTransferBatch_records_the_creator_of_every_row() {
+        TransferBatchResultDto result = sut.sendTransferBatch(1001, 2001, Arrays.asList(
+                makeTransfer(2002, "10.00"), makeTransfer(2003, "10.00")), null);
+
+        for (Transfer transfer : result.getTransfers()) {
+            Assert.assertEquals(Integer.valueOf(1001), new JdbcTemplate(dataSource).queryForObject(
+                    "SELECT created_by FROM transfer WHERE transfer_id = ?;", Integer.class, transfer.getTransferId()));
+        }
+    }
+
+    @Test(expected = TransferExceptions.TransferCreationException.class)
+    public void sendTransferBatch_with_key_already_used_by_a_send_throws_exception() {
+        sut.sendTransfer(1001, 2001, makeTransfer(2002, "10.00"), "key-3");
+
+        sut.sendTransferBatch(1001, 2001, Arrays.asList(makeTransfer(2003, "10.00")), "key-3");
+    }
+
+    private Transfer createRequest(int accountFrom, int accountTo, String amount) {
+        Transfer request = makeTransfer(accountTo, amount);
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(accountFrom);
+        return sut.createTransfer(1002, request, null);
+    }
+
+    private Transfer makeTransfer(int accountTo, String amount) {
+        Transfer transfer = new Transfer();
+        transfer.setAccountTo(accountTo);
+        transfer.setAmount(new BigDecimal(amount));
+        return transfer;
+    }
+
+    private void assertBalance(int accountId, String expected) {
+        BigDecimal actual = accountDao.getAccountObjByAccountId(0, accountId).getBalance();
+        Assert.assertEquals(0, new BigDecimal(expected).compareTo(actual));
+    }
+}
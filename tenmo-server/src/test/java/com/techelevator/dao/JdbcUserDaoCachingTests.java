@@ -0,0 +1,124 @@
+package com.techelevator.dao;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.techelevator.tenmo.cache.UserCacheInvalidator;
+import com.techelevator.tenmo.dao.JdbcUserDao;
+import com.techelevator.tenmo.dao.UserDao;
+import com.techelevator.tenmo.model.RegisterUserDto;
+import com.techelevator.tenmo.model.User;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * Runs the user lookups through the caching proxy and the CacheManager the application uses, on the test connection.
+ */
+public class JdbcUserDaoCachingTests extends BaseDaoTests {
+
+    private AnnotationConfigApplicationContext context;
+    private UserDao sut;
+    private CacheManager cacheManager;
+
+    @Before
+    public void setup() {
+        context = new AnnotationConfigApplicationContext();
+        // A JdbcTemplate rather than the DataSource, which closing the context would otherwise close
+        context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(dataSource));
+        context.register(CachingConfig.class);
+        context.refresh();
+        sut = context.getBean(UserDao.class);
+        cacheManager = context.getBean(CacheManager.class);
+    }
+
+    @After
+    public void teardown() {
+        context.close();
+    }
+
+    @Test
+    public void getUserById_repeated_lookup_is_answered_from_cache() {
+        User first = sut.getUserById(1001);
+        User second = sut.getUserById(1001);
+
+        Assert.assertEquals(first, second);
+        CacheStats stats = stats(JdbcUserDao.USERS_BY_ID_CACHE);
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.hitCount());
+    }
+
+    @Test
+    public void getUserByUsername_differently_written_name_hits_the_same_entry() {
+        User first = sut.getUserByUsername("user1");
+        User second = sut.getUserByUsername("  USER1 ");
+
+        Assert.assertEquals(first, second);
+        CacheStats stats = stats(JdbcUserDao.USERS_BY_USERNAME_CACHE);
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.hitCount());
+    }
+
+    @Test
+    public void getUserByUsername_miss_is_not_cached() {
+        Assert.assertNull(sut.getUserByUsername("user9"));
+
+        Assert.assertEquals(0, cache(JdbcUserDao.USERS_BY_USERNAME_CACHE).getNativeCache().estimatedSize());
+    }
+
+    @Test
+    public void createUser_is_visible_to_lookups_made_before_it_existed() {
+        Assert.assertNull(sut.getUserByUsername("Carol"));
+        RegisterUserDto carol = new RegisterUserDto();
+        carol.setUsername("Carol");
+        carol.setPassword("password");
+
+        User created = sut.createUser(carol);
+
+        Assert.assertEquals(created, sut.getUserByUsername("carol"));
+        Assert.assertEquals(created, sut.getUserById(created.getId()));
+    }
+
+    private CacheStats stats(String cacheName) {
+        return cache(cacheName).getNativeCache().stats();
+    }
+
+    private CaffeineCache cache(String cacheName) {
+        return (CaffeineCache) cacheManager.getCache(cacheName);
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CachingConfig {
+
+        @Bean
+        public CacheManager cacheManager() {
+            CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+                    JdbcUserDao.USERS_BY_ID_CACHE, JdbcUserDao.USERS_BY_USERNAME_CACHE);
+            cacheManager.setCacheSpecification("maximumSize=100,recordStats");
+            return cacheManager;
+        }
+
+        // Publishes the way the change bus does locally, so a created user reaches the invalidator as it would in the app
+        @Bean
+        public JdbcUserDao userDao(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+            return new JdbcUserDao(jdbcTemplate, new BCryptPasswordEncoder(),
+                    eventPublisher::publishEvent, TransactionOperations.withoutTransaction());
+        }
+
+        @Bean
+        public UserCacheInvalidator userCacheInvalidator(CacheManager cacheManager) {
+            return new UserCacheInvalidator(cacheManager);
+        }
+    }
+}
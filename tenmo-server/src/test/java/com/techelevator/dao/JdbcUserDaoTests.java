@@ -2,16 +2,24 @@ package com.techelevator.dao;
 
 import com.techelevator.tenmo.dao.JdbcUserDao;
 import com.techelevator.tenmo.exception.DaoException;
+import com.techelevator.tenmo.model.PayeeDto;
 import com.techelevator.tenmo.model.RegisterUserDto;
 import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.notification.UserChangedEvent;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class JdbcUserDaoTests extends BaseDaoTests {
     protected static final User USER_1 = new User(1001, "user1", "user1", "USER");
@@ -19,11 +27,13 @@ public class JdbcUserDaoTests extends BaseDaoTests {
     private static final User USER_3 = new User(1003, "user3", "user3", "USER");
 
     private JdbcUserDao sut;
+    private final List<Object> publishedEvents = new ArrayList<>();
 
     @Before
     public void setup() {
         JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-        sut = new JdbcUserDao(jdbcTemplate);
+        sut = new JdbcUserDao(jdbcTemplate, new BCryptPasswordEncoder(), publishedEvents::add,
+                TransactionOperations.withoutTransaction());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -105,4 +115,51 @@ public class JdbcUserDaoTests extends BaseDaoTests {
         User retrievedUser = sut.getUserByUsername(createdUser.getUsername());
         Assert.assertEquals(retrievedUser, createdUser);
     }
+
+    @Test
+    public void createUser_publishes_user_changed_event() {
+        RegisterUserDto user = new RegisterUserDto();
+        user.setUsername(" New ");
+        user.setPassword("USER");
+
+        User createdUser = sut.createUser(user);
+
+        Assert.assertEquals(1, publishedEvents.size());
+        UserChangedEvent event = (UserChangedEvent) publishedEvents.get(0);
+        Assert.assertEquals(createdUser.getId(), event.getUserId());
+        Assert.assertEquals("new", event.getUsername());
+    }
+
+    @Test
+    public void createUser_opens_an_account_with_the_starting_balance() {
+        RegisterUserDto user = new RegisterUserDto();
+        user.setUsername("new");
+        user.setPassword("USER");
+
+        User createdUser = sut.createUser(user);
+
+        BigDecimal balance = new JdbcTemplate(dataSource).queryForObject(
+                "SELECT balance FROM account WHERE user_id = ?;", BigDecimal.class, createdUser.getId());
+        Assert.assertEquals(0, new BigDecimal("1000.00").compareTo(balance));
+    }
+
+    @Test
+    public void getUsernamesByAccountIds_resolves_known_ids_and_skips_unknown() {
+        Map<Integer, String> usernames = sut.getUsernamesByAccountIds(Arrays.asList(2003, 2001, 9999));
+
+        Assert.assertEquals(2, usernames.size());
+        Assert.assertEquals(USER_1.getUsername(), usernames.get(2001));
+        Assert.assertEquals(USER_3.getUsername(), usernames.get(2003));
+    }
+
+    @Test
+    public void getPayees_returns_every_account_with_its_owner() {
+        List<PayeeDto> payees = sut.getPayees();
+
+        Assert.assertEquals(3, payees.size());
+        PayeeDto second = payees.get(1);
+        Assert.assertEquals(2002, second.getAccountId());
+        Assert.assertEquals(USER_2.getId(), second.getUserId());
+        Assert.assertEquals(USER_2.getUsername(), second.getUsername());
+    }
 }
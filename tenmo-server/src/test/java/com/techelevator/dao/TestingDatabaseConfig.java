@@ -49,7 +49,7 @@ public class TestingDatabaseConfig {
     @Bean
     public DataSource dataSource() throws SQLException {
         SingleConnectionDataSource dataSource = new SingleConnectionDataSource();
-        dataSource.setUrl(String.format("jdbc:postgresql://%s:%s/%s", DB_HOST, DB_PORT, DB_NAME));
+        dataSource.setUrl(String.format("jdbc:postgresql://%s:%s/%s?reWriteBatchedInserts=true", DB_HOST, DB_PORT, DB_NAME));
         dataSource.setUsername(DB_USERNAME);
         dataSource.setPassword(DB_PASSWORD);
         dataSource.setAutoCommit(false); //So we can rollback after each test.
@@ -0,0 +1,97 @@
+package com.techelevator.dao;
+
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.model.Transfer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Fails if a per-user transfer query can only be answered by scanning the whole transfer table. Sequential scans are
+ * priced out for the session, so the planner falls back to one only when no usable index exists for the query shape.
+ */
+public class TransferQueryPlanTests extends BaseDaoTests {
+
+    private ExplainingJdbcTemplate jdbcTemplate;
+    private JdbcTransferDao sut;
+    private int requestId;
+
+    @Before
+    public void setup() {
+        jdbcTemplate = new ExplainingJdbcTemplate(dataSource);
+        sut = new JdbcTransferDao(jdbcTemplate, new JdbcAccountDao(jdbcTemplate), event -> { });
+
+        Transfer send = new Transfer();
+        send.setAccountTo(2002);
+        send.setAmount(new BigDecimal("10.00"));
+        sut.sendTransfer(1001, 2001, send, null);
+
+        Transfer request = new Transfer();
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(2001);
+        request.setAccountTo(2002);
+        request.setAmount(new BigDecimal("20.00"));
+        requestId = sut.createTransfer(1002, request, null).getTransferId();
+
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        jdbcTemplate.clearPlans();
+    }
+
+    @Test
+    public void getTransferHistoryPageByUserId_uses_indexes() {
+        sut.getTransferHistoryPageByUserId(1001, requestId + 1, 10);
+
+        assertNoSequentialScans();
+        assertUsesIndexes("ix_transfer_account_from", "ix_transfer_account_to");
+    }
+
+    @Test
+    public void getTransferDetailPageByUserId_uses_indexes() {
+        sut.getTransferDetailPageByUserId(1001, requestId + 1, 10);
+
+        assertNoSequentialScans();
+        assertUsesIndexes("ix_transfer_account_from", "ix_transfer_account_to");
+    }
+
+    @Test
+    public void getTransferHistoryInPendingByUserId_uses_indexes() {
+        sut.getTransferHistoryInPendingByUserId(1001);
+
+        assertNoSequentialScans();
+        assertUsesIndexes("ix_transfer_pending_account_from", "ix_transfer_pending_account_to");
+    }
+
+    @Test
+    public void getTransferByTransferId_uses_indexes() {
+        sut.getTransferByTransferId(1001, requestId);
+
+        assertNoSequentialScans();
+    }
+
+    @Test
+    public void getTransferDetailByTransferId_uses_indexes() {
+        sut.getTransferDetailByTransferId(1001, requestId);
+
+        assertNoSequentialScans();
+    }
+
+    private void assertNoSequentialScans() {
+        Assert.assertFalse(jdbcTemplate.getPlans().isEmpty());
+        for (Map.Entry<String, String> plan : jdbcTemplate.getPlans().entrySet()) {
+            Assert.assertFalse(plan.getKey() + "\n" + plan.getValue(), plan.getValue().contains("Seq Scan"));
+        }
+    }
+
+    // A full walk of pk_transfer avoids "Seq Scan" but reads just as many rows, so also pin the probes we expect
+    private void assertUsesIndexes(String... indexNames) {
+        String plans = String.join("\n", jdbcTemplate.getPlans().values());
+        for (String indexName : indexNames) {
+            Assert.assertTrue(indexName + " not used:\n" + plans, plans.contains(indexName));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.techelevator.metrics;
+
+import com.techelevator.dao.BaseDaoTests;
+import com.techelevator.tenmo.dao.AccountDao;
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.dao.TransferDao;
+import com.techelevator.tenmo.exception.AccountExceptions;
+import com.techelevator.tenmo.metrics.DaoMetricsAspect;
+import com.techelevator.tenmo.model.Transfer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+
+public class DaoMetricsAspectTests extends BaseDaoTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AccountDao accountDao;
+    private TransferDao transferDao;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        DaoMetricsAspect aspect = new DaoMetricsAspect(meterRegistry);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // Proxied the way the application context proxies the DAOs, so the transfer DAO calls the account DAO's proxy
+        accountDao = proxy(new JdbcAccountDao(jdbcTemplate), aspect);
+        transferDao = proxy(new JdbcTransferDao(jdbcTemplate, accountDao, event -> { }), aspect);
+    }
+
+    @Test
+    public void exception_from_nested_dao_call_is_counted_once_against_the_outer_dao() {
+        Transfer request = createRequest(2001, 2002, "1500.00");
+
+        try {
+            transferDao.approveTransfer(1001, request.getTransferId());
+            Assert.fail("Expected InsufficientFundsException");
+        } catch (AccountExceptions.InsufficientFundsException e) {
+            Assert.assertEquals(1, totalExceptions(), 0);
+            Assert.assertEquals(1, meterRegistry.get("tenmo.dao.exceptions")
+                    .tag("dao", "JdbcTransferDao").tag("exception", "InsufficientFundsException").counter().count(), 0);
+            // Both calls are still timed with the exception they ended with
+            Assert.assertEquals(1, meterRegistry.get("tenmo.dao")
+                    .tag("dao", "JdbcAccountDao").tag("method", "transferFunds")
+                    .tag("exception", "InsufficientFundsException").timer().count());
+            Assert.assertEquals(1, meterRegistry.get("tenmo.dao")
+                    .tag("dao", "JdbcTransferDao").tag("method", "approveTransfer")
+                    .tag("exception", "InsufficientFundsException").timer().count());
+        }
+    }
+
+    @Test
+    public void exception_from_direct_dao_call_is_counted() {
+        try {
+            accountDao.getAccountByUserId(9999);
+            Assert.fail("Expected AccountNotFoundException");
+        } catch (AccountExceptions.AccountNotFoundException e) {
+            Assert.assertEquals(1, meterRegistry.get("tenmo.dao.exceptions")
+                    .tag("dao", "JdbcAccountDao").tag("exception", "AccountNotFoundException").counter().count(), 0);
+        }
+    }
+
+    @Test
+    public void exception_after_a_nested_failure_is_still_counted() {
+        Transfer request = createRequest(2001, 2002, "1500.00");
+        try {
+            transferDao.approveTransfer(1001, request.getTransferId());
+            Assert.fail("Expected InsufficientFundsException");
+        } catch (AccountExceptions.InsufficientFundsException e) {
+            // Expected
+        }
+
+        try {
+            accountDao.getAccountByUserId(9999);
+            Assert.fail("Expected AccountNotFoundException");
+        } catch (AccountExceptions.AccountNotFoundException e) {
+            Assert.assertEquals(2, totalExceptions(), 0);
+        }
+    }
+
+    private double totalExceptions() {
+        return meterRegistry.find("tenmo.dao.exceptions").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private Transfer createRequest(int accountFrom, int accountTo, String amount) {
+        Transfer request = new Transfer();
+        request.setTransferTypeId(1);
+        request.setTransferStatusId(1);
+        request.setAccountFrom(accountFrom);
+        request.setAccountTo(accountTo);
+        request.setAmount(new BigDecimal(amount));
+        return transferDao.createTransfer(1002, request, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, DaoMetricsAspect aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(aspect);
+        return (T) proxyFactory.getProxy();
+    }
+}
@@ -0,0 +1,242 @@
+package com.techelevator.notification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.techelevator.dao.BaseDaoTests;
+import com.techelevator.tenmo.cache.UserCacheInvalidator;
+import com.techelevator.tenmo.dao.JdbcAccountDao;
+import com.techelevator.tenmo.dao.JdbcTransferDao;
+import com.techelevator.tenmo.dao.JdbcUserDao;
+import com.techelevator.tenmo.dao.TransferDao;
+import com.techelevator.tenmo.exception.DaoException;
+import com.techelevator.tenmo.model.RegisterUserDto;
+import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.model.User;
+import com.techelevator.tenmo.notification.ChangeBusResyncEvent;
+import com.techelevator.tenmo.notification.ChangeBus;
+import com.techelevator.tenmo.notification.PostgresChangeBus;
+import com.techelevator.tenmo.notification.TransferChangedEvent;
+import com.techelevator.tenmo.notification.UserChangedEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PostgresChangeBusTests extends BaseDaoTests {
+
+    private final List<PostgresChangeBus> buses = new ArrayList<>();
+    private SingleConnectionDataSource testDataSource;
+    // Writes made the way the server makes them, each in its own committed transaction, so they are cleaned up by hand
+    private DriverManagerDataSource committingDataSource;
+    private DataSourceTransactionManager transactionManager;
+
+    @Before
+    public void setup() {
+        testDataSource = (SingleConnectionDataSource) dataSource;
+        committingDataSource = new DriverManagerDataSource(
+                testDataSource.getUrl(), testDataSource.getUsername(), testDataSource.getPassword());
+        transactionManager = new DataSourceTransactionManager(committingDataSource);
+    }
+
+    @After
+    public void teardown() throws InterruptedException {
+        for (PostgresChangeBus bus : buses) {
+            bus.destroy();
+        }
+        JdbcTemplate committing = new JdbcTemplate(committingDataSource);
+        committing.update("DELETE FROM transfer WHERE created_by = 1002;");
+        committing.update("DELETE FROM account WHERE user_id IN (SELECT user_id FROM tenmo_user WHERE username = 'notified');");
+        committing.update("DELETE FROM tenmo_user WHERE username = 'notified';");
+    }
+
+    @Test
+    public void publish_reaches_other_node_once_committed() throws Exception {
+        List<Object> localEvents = new ArrayList<>();
+        PostgresChangeBus sut = newBus(new JdbcTemplate(dataSource), localEvents::add);
+        BlockingQueue<Object> remoteEvents = new LinkedBlockingQueue<>();
+        startListening(newBus(new JdbcTemplate(dataSource), remoteEvents::add));
+
+        sut.publish(new TransferChangedEvent(TransferChangedEvent.Change.CREATED, makeTransfer(3005)));
+
+        Assert.assertEquals(1, localEvents.size());
+        Assert.assertNull(remoteEvents.poll(200, TimeUnit.MILLISECONDS));
+        dataSource.getConnection().commit();
+        TransferChangedEvent received = (TransferChangedEvent) remoteEvents.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(received);
+        Assert.assertEquals(TransferChangedEvent.Change.CREATED, received.getChange());
+        Assert.assertEquals(3005, received.getTransfer().getTransferId());
+        Assert.assertEquals(0, new BigDecimal("12.50").compareTo(received.getTransfer().getAmount()));
+    }
+
+    @Test
+    public void publish_is_dropped_when_transaction_rolls_back() throws Exception {
+        PostgresChangeBus sut = newBus(new JdbcTemplate(dataSource), event -> { });
+        BlockingQueue<Object> remoteEvents = new LinkedBlockingQueue<>();
+        startListening(newBus(new JdbcTemplate(dataSource), remoteEvents::add));
+
+        sut.publish(new TransferChangedEvent(TransferChangedEvent.Change.CREATED, makeTransfer(3005)));
+        dataSource.getConnection().rollback();
+        sut.publish(new UserChangedEvent(1005, "user5"));
+        dataSource.getConnection().commit();
+
+        // Notifications arrive in commit order, so the first one received is the only one sent
+        UserChangedEvent received = (UserChangedEvent) remoteEvents.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(received);
+        Assert.assertEquals(1005, received.getUserId());
+        Assert.assertNull(remoteEvents.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void listener_skips_its_own_nodes_messages() throws Exception {
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        PostgresChangeBus sut = startListening(newBus(new JdbcTemplate(dataSource), events::add));
+        DriverManagerDataSource otherNodeDataSource = new DriverManagerDataSource(
+                testDataSource.getUrl(), testDataSource.getUsername(), testDataSource.getPassword());
+        PostgresChangeBus otherNode = startListening(newBus(new JdbcTemplate(otherNodeDataSource), event -> { }));
+
+        sut.publish(new UserChangedEvent(1005, "user5"));
+        dataSource.getConnection().commit();
+        otherNode.publish(new UserChangedEvent(1006, "user6"));
+
+        Assert.assertEquals(1005, ((UserChangedEvent) events.poll(5, TimeUnit.SECONDS)).getUserId());
+        // Had the node heard its own message, it would arrive here before the other node's
+        Assert.assertEquals(1006, ((UserChangedEvent) events.poll(5, TimeUnit.SECONDS)).getUserId());
+        Assert.assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void createTransfer_reaches_other_node_when_its_transaction_commits() throws Exception {
+        BlockingQueue<Object> remoteEvents = new LinkedBlockingQueue<>();
+        startListening(newBus(new JdbcTemplate(dataSource), remoteEvents::add));
+        TransferDao sut = transactionalTransferDao(newBus(new JdbcTemplate(committingDataSource), event -> { }));
+
+        Transfer created = sut.createTransfer(1002, makeRequest(), null);
+
+        TransferChangedEvent received = (TransferChangedEvent) remoteEvents.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(received);
+        Assert.assertEquals(TransferChangedEvent.Change.CREATED, received.getChange());
+        Assert.assertEquals(created.getTransferId(), received.getTransfer().getTransferId());
+    }
+
+    @Test
+    public void createTransfer_rolls_back_when_notify_fails() {
+        TransferDao sut = transactionalTransferDao(failingBus());
+
+        try {
+            sut.createTransfer(1002, makeRequest(), null);
+            Assert.fail("Expected DaoException");
+        } catch (DaoException e) {
+            Assert.assertEquals(0, countCommitted("SELECT COUNT(*) FROM transfer WHERE created_by = 1002;"));
+        }
+    }
+
+    @Test
+    public void createUser_rolls_back_when_notify_fails() {
+        JdbcUserDao sut = new JdbcUserDao(new JdbcTemplate(committingDataSource), new BCryptPasswordEncoder(),
+                failingBus(), new TransactionTemplate(transactionManager));
+        RegisterUserDto user = new RegisterUserDto();
+        user.setUsername("notified");
+        user.setPassword("password");
+
+        try {
+            sut.createUser(user);
+            Assert.fail("Expected DaoException");
+        } catch (DaoException e) {
+            Assert.assertEquals(0, countCommitted("SELECT COUNT(*) FROM tenmo_user WHERE username = 'notified';"));
+        }
+    }
+
+    @Test
+    public void reconnect_after_lost_listen_connection_clears_user_caches() throws Exception {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+                JdbcUserDao.USERS_BY_ID_CACHE, JdbcUserDao.USERS_BY_USERNAME_CACHE);
+        Cache usersById = cacheManager.getCache(JdbcUserDao.USERS_BY_ID_CACHE);
+        usersById.put(1001, new User(1001, "user1", "user1", "USER"));
+        UserCacheInvalidator invalidator = new UserCacheInvalidator(cacheManager);
+        BlockingQueue<Object> resyncs = new LinkedBlockingQueue<>();
+        startListening(newBus(new JdbcTemplate(dataSource), event -> {
+            if (event instanceof ChangeBusResyncEvent) {
+                invalidator.onResync((ChangeBusResyncEvent) event);
+                resyncs.add(event);
+            }
+        }));
+
+        // Whatever was sent while the connection was down is lost, so the caches can no longer be trusted
+        new JdbcTemplate(committingDataSource).queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity " +
+                "WHERE datname = current_database() AND pid <> pg_backend_pid() AND query IN ('LISTEN tenmo_changes', 'SELECT 1');");
+
+        Assert.assertNotNull(resyncs.poll(10, TimeUnit.SECONDS));
+        Assert.assertNull(usersById.get(1001));
+    }
+
+    // Proxied the way the application context proxies it, so @Transactional takes effect
+    private TransferDao transactionalTransferDao(ChangeBus changeBus) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(committingDataSource);
+        ProxyFactory proxyFactory = new ProxyFactory(
+                new JdbcTransferDao(jdbcTemplate, new JdbcAccountDao(jdbcTemplate), changeBus));
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return (TransferDao) proxyFactory.getProxy();
+    }
+
+    private ChangeBus failingBus() {
+        return event -> {
+            throw new DaoException("Unable to connect to server or database");
+        };
+    }
+
+    private int countCommitted(String sql) {
+        return new JdbcTemplate(committingDataSource).queryForObject(sql, Integer.class);
+    }
+
+    private Transfer makeRequest() {
+        Transfer request = makeTransfer(0);
+        request.setAccountFrom(2001);
+        request.setAccountTo(2002);
+        return request;
+    }
+
+    private PostgresChangeBus newBus(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        PostgresChangeBus bus = new PostgresChangeBus(jdbcTemplate, eventPublisher, new ObjectMapper(),
+                testDataSource.getUrl(), testDataSource.getUsername(), testDataSource.getPassword(), 1, 1);
+        buses.add(bus);
+        return bus;
+    }
+
+    private PostgresChangeBus startListening(PostgresChangeBus bus) throws InterruptedException {
+        bus.afterPropertiesSet();
+        for (int i = 0; i < 100 && !bus.isListening(); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(bus.isListening());
+        return bus;
+    }
+
+    private Transfer makeTransfer(int transferId) {
+        Transfer transfer = new Transfer();
+        transfer.setTransferId(transferId);
+        transfer.setTransferTypeId(1);
+        transfer.setTransferStatusId(1);
+        transfer.setAccountFrom(2001);
+        transfer.setAccountTo(2002);
+        transfer.setAmount(new BigDecimal("12.50"));
+        return transfer;
+    }
+}
@@ -0,0 +1,187 @@
+package com.techelevator.notification;
+
+import com.techelevator.tenmo.exception.TransferExceptions;
+import com.techelevator.tenmo.model.Transfer;
+import com.techelevator.tenmo.notification.ChangeBusResyncEvent;
+import com.techelevator.tenmo.notification.TransferChangedEvent;
+import com.techelevator.tenmo.notification.TransferEventBroadcaster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TransferEventBroadcasterTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferEventBroadcaster sut;
+    // Set before a subscribe to make the stream it opens stop reading
+    private CountDownLatch nextStreamStalledUntil;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        sut = newBroadcaster(60);
+    }
+
+    @After
+    public void teardown() {
+        sut.destroy();
+    }
+
+    @Test
+    public void subscribe_past_limit_for_one_account_throws_exception() {
+        sut.subscribe(2001);
+        sut.subscribe(2001);
+
+        try {
+            sut.subscribe(2001);
+            Assert.fail("Expected EventStreamLimitException");
+        } catch (TransferExceptions.EventStreamLimitException e) {
+            Assert.assertEquals(2, (int) meterRegistry.get("transfer.events.streams").gauge().value());
+        }
+    }
+
+    @Test
+    public void subscribe_limit_is_per_account() {
+        sut.subscribe(2001);
+        sut.subscribe(2001);
+        sut.subscribe(2002);
+
+        Assert.assertEquals(3, (int) meterRegistry.get("transfer.events.streams").gauge().value());
+    }
+
+    @Test
+    public void onTransferChanged_reaches_the_streams_of_both_accounts_only() throws InterruptedException {
+        RecordingEmitter from = (RecordingEmitter) sut.subscribe(2001);
+        RecordingEmitter to = (RecordingEmitter) sut.subscribe(2002);
+        RecordingEmitter other = (RecordingEmitter) sut.subscribe(2003);
+
+        sut.onTransferChanged(new TransferChangedEvent(TransferChangedEvent.Change.CREATED, makeTransfer(3001)));
+
+        Assert.assertTrue(from.nextEvent().contains("event:created"));
+        Assert.assertTrue(to.nextEvent().contains("event:created"));
+        Assert.assertTrue(other.sent.poll(5, TimeUnit.SECONDS).contains("connected"));
+        Assert.assertNull(other.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void onTransferChanged_closes_a_stream_that_stops_reading_without_holding_up_the_others() throws InterruptedException {
+        CountDownLatch stalledUntil = new CountDownLatch(1);
+        nextStreamStalledUntil = stalledUntil;
+        RecordingEmitter stalled = (RecordingEmitter) sut.subscribe(2001);
+        RecordingEmitter reading = (RecordingEmitter) sut.subscribe(2001);
+
+        // More events than a queue holds, each read before the next is sent, as a client keeping up would
+        for (int i = 0; i < 10; i++) {
+            sut.onTransferChanged(new TransferChangedEvent(TransferChangedEvent.Change.CREATED, makeTransfer(3001 + i)));
+            Assert.assertTrue(reading.nextEvent().contains("id:" + (3001 + i)));
+        }
+
+        Assert.assertEquals(1, (int) meterRegistry.get("transfer.events.streams").gauge().value());
+        Assert.assertEquals(1, (int) meterRegistry.get("transfer.events.slow.closed").counter().count());
+        // The write it was stuck in finishes, and the stream is then completed rather than sent the rest
+        stalledUntil.countDown();
+        Assert.assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, stalled.sent.size());
+    }
+
+    @Test
+    public void heartbeat_is_sent_on_an_idle_stream() throws InterruptedException {
+        sut.destroy();
+        sut = newBroadcaster(1);
+        RecordingEmitter emitter = (RecordingEmitter) sut.subscribe(2001);
+
+        Assert.assertTrue(emitter.sent.poll(5, TimeUnit.SECONDS).contains("connected"));
+        String heartbeat = emitter.sent.poll(5, TimeUnit.SECONDS);
+
+        Assert.assertNotNull(heartbeat);
+        Assert.assertTrue(heartbeat.contains("heartbeat"));
+    }
+
+    @Test
+    public void onResync_completes_every_stream() throws InterruptedException {
+        RecordingEmitter first = (RecordingEmitter) sut.subscribe(2001);
+        RecordingEmitter second = (RecordingEmitter) sut.subscribe(2002);
+
+        sut.onResync(new ChangeBusResyncEvent());
+
+        Assert.assertTrue(first.completed.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(second.completed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, (int) meterRegistry.get("transfer.events.streams").gauge().value());
+    }
+
+    private TransferEventBroadcaster newBroadcaster(long heartbeatSeconds) {
+        return new TransferEventBroadcaster(60, heartbeatSeconds, 2, 2, 4, meterRegistry) {
+            @Override
+            protected SseEmitter newEmitter(long timeoutMillis) {
+                RecordingEmitter emitter = new RecordingEmitter(nextStreamStalledUntil);
+                nextStreamStalledUntil = null;
+                return emitter;
+            }
+        };
+    }
+
+    private Transfer makeTransfer(int transferId) {
+        Transfer transfer = new Transfer();
+        transfer.setTransferId(transferId);
+        transfer.setTransferTypeId(2);
+        transfer.setTransferStatusId(2);
+        transfer.setAccountFrom(2001);
+        transfer.setAccountTo(2002);
+        transfer.setAmount(new BigDecimal("12.50"));
+        return transfer;
+    }
+
+    // Stands in for the client end: records what is written, and can block in a write like a client that stopped reading
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch stalledUntil;
+
+        RecordingEmitter(CountDownLatch stalledUntil) {
+            this.stalledUntil = stalledUntil;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                text.append(part.getData());
+            }
+            sent.add(text.toString());
+            if (stalledUntil != null) {
+                try {
+                    stalledUntil.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+            super.complete();
+        }
+
+        // Skips the "connected" comment every stream starts with
+        String nextEvent() throws InterruptedException {
+            String event;
+            do {
+                event = sent.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(event);
+            } while (event.contains("connected"));
+            return event;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.techelevator.security;
+
+import com.techelevator.tenmo.exception.UserExceptions;
+import com.techelevator.tenmo.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedPasswordEncoderTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder sut;
+
+    @Before
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        sut = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, meterRegistry);
+    }
+
+    @After
+    public void teardown() {
+        release.countDown();
+        sut.destroy();
+    }
+
+    @Test
+    public void encode_returns_the_delegate_result_and_records_its_time() {
+        release.countDown();
+
+        Assert.assertEquals("hashed:secret", sut.encode("secret"));
+        Assert.assertEquals(1, meterRegistry.get("password.hash").tag("operation", "encode").timer().count());
+    }
+
+    @Test
+    public void encode_when_workers_and_queue_are_full_is_rejected_at_once() throws InterruptedException {
+        new Thread(() -> sut.encode("running")).start();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        new Thread(() -> sut.encode("queued")).start();
+        waitForQueuedHash();
+
+        try {
+            sut.encode("rejected");
+            Assert.fail("Expected PasswordHashingBusyException");
+        } catch (UserExceptions.PasswordHashingBusyException e) {
+            Assert.assertEquals(1, meterRegistry.get("password.hash.rejected").counter().count(), 0);
+        }
+    }
+
+    private void waitForQueuedHash() throws InterruptedException {
+        for (int i = 0; i < 500 && meterRegistry.get("password.hash.queue").gauge().value() < 1; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.techelevator.security;
+
+import com.techelevator.tenmo.security.RequestRateLimiter;
+import com.techelevator.tenmo.security.jwt.RateLimitFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+public class RateLimitFilterTests {
+
+    private RateLimitFilter sut;
+
+    @Before
+    public void setup() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limit.buckets.maximum-size", "100")
+                .withProperty("rate-limit.buckets.idle-seconds", "300");
+        // two writes and then nothing, since the bucket does not refill while a test runs
+        for (String endpointClass : new String[]{"read", "write", "login"}) {
+            environment.withProperty("rate-limit." + endpointClass + ".permits-per-second", "0.001")
+                    .withProperty("rate-limit." + endpointClass + ".burst", "2");
+        }
+        sut = new RateLimitFilter(new RequestRateLimiter(environment, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    public void doFilter_refuses_once_the_burst_is_used() throws IOException, ServletException {
+        Assert.assertEquals(HttpStatus.OK.value(), filter(DispatcherType.REQUEST).getStatus());
+        Assert.assertEquals(HttpStatus.OK.value(), filter(DispatcherType.REQUEST).getStatus());
+
+        MockHttpServletResponse refused = filter(DispatcherType.REQUEST);
+
+        Assert.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), refused.getStatus());
+        Assert.assertNotNull(refused.getHeader("Retry-After"));
+    }
+
+    @Test
+    public void doFilter_does_not_charge_error_or_async_dispatches() throws IOException, ServletException {
+        Assert.assertEquals(HttpStatus.OK.value(), filter(DispatcherType.REQUEST).getStatus());
+        Assert.assertEquals(HttpStatus.OK.value(), filter(DispatcherType.ERROR).getStatus());
+        Assert.assertEquals(HttpStatus.OK.value(), filter(DispatcherType.ASYNC).getStatus());
+
+        // Had either redispatch been charged, the bucket would already be empty
+        Assert.assertEquals(HttpStatus.OK.value(), filter(DispatcherType.REQUEST).getStatus());
+    }
+
+    @Test
+    public void doFilter_lets_error_dispatch_through_once_the_bucket_is_empty() throws IOException, ServletException {
+        filter(DispatcherType.REQUEST);
+        filter(DispatcherType.REQUEST);
+
+        MockHttpServletResponse errorPage = filter(DispatcherType.ERROR);
+
+        Assert.assertEquals(HttpStatus.OK.value(), errorPage.getStatus());
+        Assert.assertNull(errorPage.getHeader("Retry-After"));
+    }
+
+    private MockHttpServletResponse filter(DispatcherType dispatcherType) throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transfer");
+        request.setServletPath("/transfer");
+        request.setDispatcherType(dispatcherType);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        sut.doFilter(request, response, chain);
+        if (response.getStatus() == HttpStatus.OK.value()) {
+            Assert.assertSame(request, chain.getRequest());
+        }
+        return response;
+    }
+}
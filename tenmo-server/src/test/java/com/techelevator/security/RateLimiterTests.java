@@ -0,0 +1,53 @@
+package com.techelevator.security;
+
+import com.techelevator.tenmo.security.RateLimiter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTests {
+
+    private RateLimiter sut;
+
+    @Before
+    public void setup() {
+        // one permit per second, so nothing refills while a test runs
+        sut = new RateLimiter(1, 5, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void tryAcquire_grants_the_burst_then_refuses() {
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(0, sut.tryAcquire("user:1001"));
+        }
+
+        long waitNanos = sut.tryAcquire("user:1001");
+
+        Assert.assertTrue(waitNanos > 0);
+        Assert.assertTrue(waitNanos <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void tryAcquire_keeps_a_separate_bucket_per_key() {
+        for (int i = 0; i < 5; i++) {
+            sut.tryAcquire("user:1001");
+        }
+
+        Assert.assertEquals(0, sut.tryAcquire("user:1002"));
+    }
+
+    @Test
+    public void tryAcquire_refused_call_takes_nothing_from_the_bucket() {
+        for (int i = 0; i < 5; i++) {
+            sut.tryAcquire("user:1001");
+        }
+
+        long firstWait = sut.tryAcquire("user:1001");
+        long secondWait = sut.tryAcquire("user:1001");
+
+        Assert.assertTrue(secondWait <= firstWait);
+    }
+}
@@ -0,0 +1,103 @@
+package com.techelevator.security;
+
+import com.techelevator.tenmo.security.TenmoPrincipal;
+import com.techelevator.tenmo.security.jwt.TokenProvider;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.Date;
+
+public class TokenProviderTests {
+
+    private static final String SECRET = "T9GKvpb3oX5qqo3sd6+OJ2iqldexr32h7FHMpkgON+6yAtr2gfJOQkjt4mR9b7rCPL3wip8vgXzkr2LOpbAnitVQvHnIO2tlaQdnPo+xc10/KtcEBDMQV6nPn41+ScZ9wbvTIQn2+FUoJkQhXFcWRe4r4CbDKzZ73Z4ZyhMmJ4n8crYDl7dR3XjScLq4sO0BXYHK1qj6u7JPABoqQXv83uycysTt/TtDIxSl5r5+M7U/99hHvdLmfWBUlCoorhGodggZow==";
+    private static final Authentication USER = new UsernamePasswordAuthenticationToken("user1", "",
+            AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+    private TokenProvider sut;
+
+    @Before
+    public void setup() {
+        sut = new TokenProvider(SECRET, 60, 120, 600, 100);
+        sut.afterPropertiesSet();
+    }
+
+    @Test
+    public void resolveAuthentication_given_valid_token_returns_user_and_authorities() {
+        String token = sut.createToken(USER, 1001, 2001, false);
+
+        Authentication authentication = sut.resolveAuthentication(token);
+
+        Assert.assertEquals("user1", authentication.getName());
+        Assert.assertEquals("ROLE_USER", authentication.getAuthorities().iterator().next().getAuthority());
+        Assert.assertSame(authentication, sut.resolveAuthentication(token));
+    }
+
+    @Test
+    public void resolveAuthentication_exposes_user_and_account_ids() {
+        Authentication authentication = sut.resolveAuthentication(sut.createToken(USER, 1001, 2001, false));
+
+        TenmoPrincipal principal = (TenmoPrincipal) authentication.getPrincipal();
+        Assert.assertEquals(1001, principal.getUserId());
+        Assert.assertEquals(2001, principal.getAccountId());
+    }
+
+    @Test
+    public void resolveAuthentication_given_token_without_identity_claims_returns_null() {
+        String token = Jwts.builder()
+                .setSubject("user1")
+                .claim("auth", "ROLE_USER")
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)), SignatureAlgorithm.HS512)
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .compact();
+
+        Assert.assertNull(sut.resolveAuthentication(token));
+    }
+
+    @Test
+    public void resolveAuthentication_given_refresh_token_returns_null() {
+        Assert.assertNull(sut.resolveAuthentication(sut.createRefreshToken(USER, 1001, 2001)));
+    }
+
+    @Test
+    public void resolveRefreshAuthentication_given_refresh_token_returns_principal() {
+        Authentication authentication = sut.resolveRefreshAuthentication(sut.createRefreshToken(USER, 1001, 2001));
+
+        TenmoPrincipal principal = (TenmoPrincipal) authentication.getPrincipal();
+        Assert.assertEquals("user1", principal.getUsername());
+        Assert.assertEquals(2001, principal.getAccountId());
+    }
+
+    @Test
+    public void resolveRefreshAuthentication_given_access_token_returns_null() {
+        Assert.assertNull(sut.resolveRefreshAuthentication(sut.createToken(USER, 1001, 2001, false)));
+    }
+
+    @Test
+    public void resolveAuthentication_given_tampered_token_returns_null() {
+        String token = sut.createToken(USER, 1001, 2001, false);
+        // The last base64url character of a signature carries padding bits that some decoders ignore, so a character
+        // in the middle is changed instead
+        int signatureStart = token.lastIndexOf('.') + 1;
+        int flipAt = signatureStart + (token.length() - signatureStart) / 2;
+        char flipped = token.charAt(flipAt) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, flipAt) + flipped + token.substring(flipAt + 1);
+
+        Assert.assertNull(sut.resolveAuthentication(tampered));
+    }
+
+    @Test
+    public void resolveAuthentication_given_expired_token_returns_null() {
+        TokenProvider expiringProvider = new TokenProvider(SECRET, -1, -1, -1, 100);
+        expiringProvider.afterPropertiesSet();
+
+        Assert.assertNull(expiringProvider.resolveAuthentication(expiringProvider.createToken(USER, 1001, 2001, false)));
+    }
+}
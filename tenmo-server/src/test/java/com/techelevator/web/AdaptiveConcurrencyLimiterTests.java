@@ -0,0 +1,78 @@
+package com.techelevator.web;
+
+import com.techelevator.tenmo.web.AdaptiveConcurrencyLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AdaptiveConcurrencyLimiterTests {
+
+    private static final long TARGET_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AtomicInteger poolWaiters = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private final AdaptiveConcurrencyLimiter sut = new AdaptiveConcurrencyLimiter(4, 2, 8, 0.5, TARGET_LATENCY_NANOS, poolWaiters::get, now::get);
+
+    @Test
+    public void tryAcquire_refuses_once_the_limit_is_in_flight() {
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(sut.tryAcquire());
+        }
+
+        Assert.assertFalse(sut.tryAcquire());
+    }
+
+    @Test
+    public void release_while_threads_wait_for_connections_shrinks_the_limit_to_the_floor() {
+        poolWaiters.set(3);
+        for (int i = 0; i < 3; i++) {
+            sut.tryAcquire();
+            sut.release(FAST);
+        }
+
+        Assert.assertEquals(2, sut.getLimit());
+    }
+
+    @Test
+    public void release_slower_than_target_shrinks_the_limit() {
+        sut.tryAcquire();
+        sut.release(TARGET_LATENCY_NANOS * 2);
+
+        Assert.assertEquals(2, sut.getLimit());
+    }
+
+    @Test
+    public void release_when_healthy_grows_the_limit_up_to_the_ceiling() {
+        for (int i = 0; i < 200; i++) {
+            sut.tryAcquire();
+            sut.release(FAST);
+        }
+
+        Assert.assertEquals(8, sut.getLimit());
+        Assert.assertEquals(0, sut.getInFlight());
+    }
+
+    @Test
+    public void release_backs_off_once_per_latency_window() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 1, 16, 0.5, TARGET_LATENCY_NANOS, poolWaiters::get, now::get);
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire();
+        }
+
+        // Requests admitted under the old limit finish slow one after another, but count as one signal
+        for (int i = 0; i < 4; i++) {
+            limiter.release(TARGET_LATENCY_NANOS * 2);
+        }
+        Assert.assertEquals(8, limiter.getLimit());
+
+        now.addAndGet(TARGET_LATENCY_NANOS);
+        for (int i = 0; i < 4; i++) {
+            limiter.release(TARGET_LATENCY_NANOS * 2);
+        }
+        Assert.assertEquals(4, limiter.getLimit());
+    }
+}
@@ -43,6 +43,8 @@ CREATE TABLE account (
 	CONSTRAINT FK_account_tenmo_user FOREIGN KEY (user_id) REFERENCES tenmo_user (user_id)
 );
 
+CREATE INDEX IX_account_user_id ON account (user_id, account_id);
+
 CREATE SEQUENCE seq_transfer_id
   INCREMENT BY 1
   START WITH 3001
@@ -55,7 +57,12 @@ CREATE TABLE transfer (
 	account_from int NOT NULL,
 	account_to int NOT NULL,
 	amount decimal(13, 2) NOT NULL,
+	created_by int NULL,
+	idempotency_key varchar(64) NULL,
+	batch_id int NULL,
 	CONSTRAINT PK_transfer PRIMARY KEY (transfer_id),
+	CONSTRAINT UQ_transfer_idempotency_key UNIQUE (created_by, idempotency_key),
+	CONSTRAINT FK_transfer_created_by FOREIGN KEY (created_by) REFERENCES tenmo_user (user_id),
 	CONSTRAINT FK_transfer_account_from FOREIGN KEY (account_from) REFERENCES account (account_id),
 	CONSTRAINT FK_transfer_account_to FOREIGN KEY (account_to) REFERENCES account (account_id),
 	CONSTRAINT FK_transfer_transfer_status FOREIGN KEY (transfer_status_id) REFERENCES transfer_status (transfer_status_id),
@@ -64,6 +71,12 @@ CREATE TABLE transfer (
 	CONSTRAINT CK_transfer_amount_gt_0 CHECK (amount > 0)
 );
 
+CREATE INDEX IX_transfer_account_from ON transfer (account_from, transfer_id);
+CREATE INDEX IX_transfer_account_to ON transfer (account_to, transfer_id);
+CREATE INDEX IX_transfer_pending_account_from ON transfer (account_from) WHERE transfer_status_id = 1;
+CREATE INDEX IX_transfer_pending_account_to ON transfer (account_to) WHERE transfer_status_id = 1;
+CREATE INDEX IX_transfer_batch_id ON transfer (batch_id) WHERE batch_id IS NOT NULL;
+
 INSERT INTO transfer_status (transfer_status_desc) VALUES ('Pending');
 INSERT INTO transfer_status (transfer_status_desc) VALUES ('Approved');
 INSERT INTO transfer_status (transfer_status_desc) VALUES ('Rejected');
@@ -75,4 +88,8 @@ INSERT INTO tenmo_user (username,password_hash,role) VALUES ('user1','user1','RO
 INSERT INTO tenmo_user (username,password_hash,role) VALUES ('user2','user2','ROLE_USER'); -- 1002
 INSERT INTO tenmo_user (username,password_hash,role) VALUES ('user3','user3','ROLE_USER');
 
+INSERT INTO account (user_id, balance) VALUES (1001, 1000.00); -- 2001
+INSERT INTO account (user_id, balance) VALUES (1002, 1000.00); -- 2002
+INSERT INTO account (user_id, balance) VALUES (1003, 1000.00); -- 2003
+
 COMMIT TRANSACTION;